@@ -0,0 +1,76 @@
+package student.management.StudentManagement.benchmark;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.RunScript;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import student.management.StudentManagement.repository.StudentRepository;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Objects;
+
+/*ベンチマーク用の組み込みH2データベース（MySQL互換モード）。
+ * スキーマを作成して合成データを登録し、本番と同じStudentRepositoryのMapperを提供する。*/
+public final class BenchmarkDatabase implements AutoCloseable {
+
+    private final JdbcDataSource dataSource;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final StudentRepository repository;
+
+    private BenchmarkDatabase(JdbcDataSource dataSource, SqlSessionFactory sqlSessionFactory) {
+        this.dataSource = dataSource;
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.repository = new SqlSessionTemplate(sqlSessionFactory).getMapper(StudentRepository.class);
+    }
+
+    /*データベースを作成し、指定件数の受講生を登録する。
+     * @param name データベース名（同じJVM内で重複しないようにする）
+     * @param studentCount 受講生の件数
+     * @param coursesPerStudent 受講生１人あたりのコース数*/
+    public static BenchmarkDatabase create(String name, int studentCount, int coursesPerStudent) throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE");
+        dataSource.setUser("sa");
+
+        try (Connection connection = dataSource.getConnection();
+             Reader schema = new InputStreamReader(Objects.requireNonNull(
+                     BenchmarkDatabase.class.getResourceAsStream("/benchmark/schema.sql")), StandardCharsets.UTF_8)) {
+            RunScript.execute(connection, schema);
+        }
+        SyntheticRoster.seed(dataSource, studentCount, coursesPerStudent);
+
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        SqlSessionFactory sqlSessionFactory = factoryBean.getObject();
+        sqlSessionFactory.getConfiguration().addMapper(StudentRepository.class);
+
+        BenchmarkDatabase database = new BenchmarkDatabase(dataSource, sqlSessionFactory);
+        // 最新の受講状況の射影を作成する
+        database.repository.backfillLatestCourseStatuses(0, database.repository.findMaxStudentsCourseId());
+        return database;
+    }
+
+    public JdbcDataSource getDataSource() {
+        return dataSource;
+    }
+
+    public SqlSessionFactory getSqlSessionFactory() {
+        return sqlSessionFactory;
+    }
+
+    public StudentRepository getRepository() {
+        return repository;
+    }
+
+    @Override
+    public void close() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+}
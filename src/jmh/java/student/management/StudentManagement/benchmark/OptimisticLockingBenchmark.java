@@ -0,0 +1,123 @@
+package student.management.StudentManagement.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import student.management.StudentManagement.Controller.converter.StudentConverter;
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.domain.StudentDetail;
+import student.management.StudentManagement.exception.StudentVersionConflictException;
+import student.management.StudentManagement.repository.StudentRepository;
+import student.management.StudentManagement.service.ChangeVersions;
+import student.management.StudentManagement.service.EnrollmentStatistics;
+import student.management.StudentManagement.service.StudentApiClient;
+import student.management.StudentManagement.service.StudentDetailCache;
+import student.management.StudentManagement.service.StudentDetailLoader;
+import student.management.StudentManagement.service.StudentSearchIndex;
+import student.management.StudentManagement.service.StudentService;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*同じ受講生を複数のスレッドが読み込み・編集・更新する場合のスループットの比較。
+ * どちらもStudentService.updateStudent（統計・キャッシュ・検索インデックスの更新を含む）で更新する。
+ * pessimisticは読み込み時にSELECT ... FOR UPDATEで行をロックして編集の間も保持し、versionを指定せずに更新する。
+ * optimisticはロックせずに読み込み、versionを指定して更新し、競合した場合は読み込みからやり直す
+ * （統計の更新前の寄与を読むためのロックは、更新のトランザクションの間だけ保持する）。
+ * StudentServiceはSpringのプロキシを通さずに作成するため、@Transactionalの代わりにTransactionTemplateで囲む。
+ * 競合の回数はconflictsとして出力する。*/
+@State(Scope.Benchmark)
+@Threads(8)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.SECONDS)
+public class OptimisticLockingBenchmark {
+
+    /*更新対象の受講生の件数（少ないほど競合が多い）*/
+    @Param({"1", "16"})
+    public int hotStudents;
+
+    /*読み込みから更新までの編集処理の重さ（Blackhole.consumeCPUのトークン数）*/
+    @Param({"1000"})
+    public int editTokens;
+
+    private BenchmarkDatabase database;
+    private StudentRepository repository;
+    private StudentService service;
+    private TransactionTemplate transactionTemplate;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Conflicts {
+        public long conflicts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            conflicts = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create("locking_" + hotStudents, 1000, 1);
+        repository = database.getRepository();
+        StudentSearchIndex searchIndex = new StudentSearchIndex(repository, true);
+        searchIndex.build();
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        service = new StudentService(repository, new StudentConverter(), new StudentDetailLoader(repository),
+                objectMapper, new StudentDetailCache(objectMapper, 10_000, 100_000, Duration.ofMinutes(5)),
+                searchIndex, new EnrollmentStatistics(repository),
+                new StudentApiClient(objectMapper, "http://localhost:8080", "/studentList",
+                        Duration.ofSeconds(2), Duration.ofSeconds(30)),
+                new ChangeVersions());
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database.getDataSource()));
+        try (Connection connection = database.getDataSource().getConnection();
+             Statement statement = connection.createStatement()) {
+            // ロック待ちでタイムアウトしないようにする
+            statement.execute("SET DEFAULT_LOCK_TIMEOUT 60000");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public void pessimistic() {
+        int studentId = nextStudentId();
+        transactionTemplate.executeWithoutResult(status -> {
+            // 更新処理で使用しているSELECT ... FOR UPDATEで行をロックし、コミットまで保持する
+            repository.findStudentStatsRows(List.of(studentId), true);
+            Student student = repository.findStudentById((long) studentId).orElseThrow();
+            Blackhole.consumeCPU(editTokens);
+            student.setRemark("edited by " + Thread.currentThread().getName());
+            student.setVersion(null);
+            service.updateStudent(new StudentDetail(student, List.of(), List.of()));
+        });
+    }
+
+    @Benchmark
+    public void optimistic(Conflicts conflicts) {
+        int studentId = nextStudentId();
+        while (true) {
+            Student student = repository.findStudentById((long) studentId).orElseThrow();
+            Blackhole.consumeCPU(editTokens);
+            student.setRemark("edited by " + Thread.currentThread().getName());
+            try {
+                transactionTemplate.executeWithoutResult(
+                        status -> service.updateStudent(new StudentDetail(student, List.of(), List.of())));
+                return;
+            } catch (StudentVersionConflictException e) {
+                conflicts.conflicts++;
+            }
+        }
+    }
+
+    private int nextStudentId() {
+        return 1 + ThreadLocalRandom.current().nextInt(hotStudents);
+    }
+}
@@ -0,0 +1,42 @@
+package student.management.StudentManagement.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import student.management.StudentManagement.Controller.converter.StudentConverter;
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.data.StudentsCourse;
+import student.management.StudentManagement.domain.StudentDetail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/*StudentConverter.convertStudentDetailsのベンチマーク。
+ * 受講生の件数に対して処理時間が線形に増えること（件数が100倍でスループットが約1/100）を確認する。*/
+@State(Scope.Benchmark)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.SECONDS)
+public class StudentConverterBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int students;
+
+    @Param({"5"})
+    public int coursesPerStudent;
+
+    private final StudentConverter converter = new StudentConverter();
+    private List<Student> studentList;
+    private List<StudentsCourse> courseList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        studentList = SyntheticRoster.students(students);
+        courseList = new ArrayList<>(SyntheticRoster.courses(students, coursesPerStudent));
+        // データベースから取得した順序に依存しないよう、コースの並びをシャッフルする
+        Collections.shuffle(courseList, new Random(42));
+    }
+
+    @Benchmark
+    public List<StudentDetail> convertStudentDetails() {
+        return converter.convertStudentDetails(studentList, courseList);
+    }
+}
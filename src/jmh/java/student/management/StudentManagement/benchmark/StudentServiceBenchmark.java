@@ -0,0 +1,103 @@
+package student.management.StudentManagement.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import student.management.StudentManagement.Controller.converter.StudentConverter;
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.domain.StudentDetail;
+import student.management.StudentManagement.repository.StudentRepository;
+import student.management.StudentManagement.service.ChangeVersions;
+import student.management.StudentManagement.service.EnrollmentStatistics;
+import student.management.StudentManagement.service.StudentApiClient;
+import student.management.StudentManagement.service.StudentDetailCache;
+import student.management.StudentManagement.service.StudentDetailLoader;
+import student.management.StudentManagement.service.StudentSearchIndex;
+import student.management.StudentManagement.service.StudentService;
+
+import java.time.Duration;
+import java.util.List;
+
+/*StudentServiceの一覧取得・検索のベンチマーク。
+ * 組み込みH2に合成データを登録し、データベースへの問い合わせを含めたスループットを計測する。*/
+@State(Scope.Benchmark)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.SECONDS)
+public class StudentServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int students;
+
+    @Param({"3"})
+    public int coursesPerStudent;
+
+    private BenchmarkDatabase database;
+    private StudentRepository repository;
+    private StudentService service;
+    private StudentSearchIndex searchIndex;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create("service_" + students + "_" + coursesPerStudent,
+                students, coursesPerStudent);
+        repository = database.getRepository();
+        searchIndex = new StudentSearchIndex(repository, true);
+        searchIndex.build();
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        service = new StudentService(repository, new StudentConverter(), new StudentDetailLoader(repository),
+                objectMapper, new StudentDetailCache(objectMapper, 10_000, 100_000, Duration.ofMinutes(5)),
+                searchIndex, new EnrollmentStatistics(repository),
+                new StudentApiClient(objectMapper, "http://localhost:8080", "/studentList",
+                        Duration.ofSeconds(2), Duration.ofSeconds(30)),
+                new ChangeVersions());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public List<StudentDetail> getAllStudents() {
+        return service.getAllStudents();
+    }
+
+    /*受講生一覧を組み立てて毎回シリアライズする場合*/
+    @Benchmark
+    public byte[] getAllStudentsSerialized() throws Exception {
+        return objectMapper.writeValueAsBytes(service.getAllStudentsWithCourseStatuses());
+    }
+
+    /*受講生ごとのシリアライズ済みJSONを連結する場合（２回目以降はキャッシュから）*/
+    @Benchmark
+    public byte[] getAllStudentsJsonCached() {
+        return service.getAllStudentsWithCourseStatusesJson();
+    }
+
+    @Benchmark
+    public List<StudentDetail> searchStudentsByGender() {
+        return service.searchStudentsByGender("Female");
+    }
+
+    @Benchmark
+    public List<Student> searchStudentsByCourseName() {
+        return repository.searchStudents(null, null, "Python");
+    }
+
+    /*コース名の部分一致検索で受講生IDを求める（検索インデックス）*/
+    @Benchmark
+    public List<Integer> searchStudentIdsByCourseNameIndexed() {
+        return searchIndex.search(null, "ytho");
+    }
+
+    /*同じ条件をデータベースのLIKE検索で求める場合*/
+    @Benchmark
+    public List<Integer> searchStudentIdsByCourseNameLike() {
+        return repository.searchStudentIdsByText(null, "ytho");
+    }
+
+    /*部分一致検索の全体（受講生IDの検索、主キーでの取得、受講生詳細の組み立て）*/
+    @Benchmark
+    public List<StudentDetail> searchStudentsByText() {
+        return service.searchStudentsByText("生1", "ytho");
+    }
+}
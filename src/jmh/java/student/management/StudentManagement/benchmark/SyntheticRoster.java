@@ -0,0 +1,131 @@
+package student.management.StudentManagement.benchmark;
+
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.data.StudentsCourse;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/*ベンチマーク用の受講生データを生成する。
+ * 受講生ID・コースIDは1からの連番で、性別・地域・コース名・受講状況は決まった順に割り当てるため、
+ * 同じ件数を指定すれば常に同じデータになる。*/
+public final class SyntheticRoster {
+
+    static final String[] GENDERS = {"Male", "Female", "Other"};
+    static final String[] REGIONS = {"東京", "大阪", "愛知", "福岡", "北海道", "愛媛"};
+    static final String[] COURSE_NAMES = {"JAVA", "AWS", "Python", "WordPress", "Excel", "デザイン"};
+    static final String[] STATUSES = {"仮申込", "本申込", "受講中", "受講終了"};
+
+    private static final int BATCH_SIZE = 5_000;
+
+    private SyntheticRoster() {
+    }
+
+    /*受講生をメモリ上に生成する*/
+    public static List<Student> students(int count) {
+        List<Student> students = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            Student student = new Student(id, "受講生" + id, "ジュコウセイ" + id, "student" + id,
+                    "student" + id + "@example.com", REGIONS[id % REGIONS.length], 20 + id % 40,
+                    GENDERS[id % GENDERS.length]);
+            student.setRemark("");
+            student.setIsDeleted(false);
+            students.add(student);
+        }
+        return students;
+    }
+
+    /*受講生コース情報をメモリ上に生成する。受講生の順に並ぶため、シャッフルして渡すことを想定する*/
+    public static List<StudentsCourse> courses(int studentCount, int coursesPerStudent) {
+        List<StudentsCourse> courses = new ArrayList<>(studentCount * coursesPerStudent);
+        LocalDate startDate = LocalDate.of(2024, 4, 1);
+        int courseId = 1;
+        for (int studentId = 1; studentId <= studentCount; studentId++) {
+            for (int i = 0; i < coursesPerStudent; i++) {
+                courses.add(new StudentsCourse(courseId, startDate, startDate.plusYears(1), null, studentId,
+                        COURSE_NAMES[(studentId + i) % COURSE_NAMES.length]));
+                courseId++;
+            }
+        }
+        return courses;
+    }
+
+    /*データベースに受講生・受講生コース情報・受講状況を登録する。
+     * 受講状況はコースごとに仮申込と、コースによってはその後の状況の２件を登録する。
+     * 最新の受講状況の射影は呼び出し側で作成する。*/
+    public static void seed(DataSource dataSource, int studentCount, int coursesPerStudent) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO students (id, name, furigana, nickname, email, region, age, gender, remark, isdeleted) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                int pending = 0;
+                for (Student student : students(studentCount)) {
+                    statement.setInt(1, student.getId());
+                    statement.setString(2, student.getStudentName());
+                    statement.setString(3, student.getFurigana());
+                    statement.setString(4, student.getNickname());
+                    statement.setString(5, student.getEmail());
+                    statement.setString(6, student.getRegion());
+                    statement.setInt(7, student.getAge());
+                    statement.setString(8, student.getGender());
+                    statement.setString(9, student.getRemark());
+                    statement.setBoolean(10, student.getId() % 50 == 0); // ２％を論理削除済みにする
+                    statement.addBatch();
+                    pending = flushIfFull(statement, pending + 1);
+                }
+                statement.executeBatch();
+            }
+
+            try (PreparedStatement courseStatement = connection.prepareStatement(
+                    "INSERT INTO students_courses (id, student_id, course_name, start_date, end_date) VALUES (?, ?, ?, ?, ?)");
+                 PreparedStatement statusStatement = connection.prepareStatement(
+                         "INSERT INTO students_courses_status (students_courses_id, status) VALUES (?, ?)")) {
+                int pending = 0;
+                for (StudentsCourse course : courses(studentCount, coursesPerStudent)) {
+                    courseStatement.setInt(1, course.getId());
+                    courseStatement.setInt(2, course.getStudentId());
+                    courseStatement.setString(3, course.getCourseName());
+                    courseStatement.setTimestamp(4, Timestamp.valueOf(course.getStartDate().atStartOfDay()));
+                    courseStatement.setTimestamp(5, Timestamp.valueOf(course.getEndDate().atStartOfDay()));
+                    courseStatement.addBatch();
+
+                    statusStatement.setInt(1, course.getId());
+                    statusStatement.setString(2, STATUSES[0]);
+                    statusStatement.addBatch();
+                    int next = course.getId() % STATUSES.length;
+                    if (next != 0) {
+                        statusStatement.setInt(1, course.getId());
+                        statusStatement.setString(2, STATUSES[next]);
+                        statusStatement.addBatch();
+                    }
+
+                    if (++pending >= BATCH_SIZE) {
+                        courseStatement.executeBatch();
+                        statusStatement.executeBatch();
+                        pending = 0;
+                    }
+                }
+                courseStatement.executeBatch();
+                statusStatement.executeBatch();
+            }
+
+            connection.commit();
+        }
+    }
+
+    private static int flushIfFull(PreparedStatement statement, int pending) throws SQLException {
+        if (pending >= BATCH_SIZE) {
+            statement.executeBatch();
+            return 0;
+        }
+        return pending;
+    }
+}
@@ -1,26 +1,47 @@
 package student.management.StudentManagement.Controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import student.management.StudentManagement.config.ReadYourWrites;
+import student.management.StudentManagement.data.ArchivalStatsDTO;
 import student.management.StudentManagement.data.CourseStatusDTO;
 import student.management.StudentManagement.data.CourseStatusUpdateRequest;
+import student.management.StudentManagement.data.EnrollmentStatsDTO;
 import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.data.StudentRegistrationResult;
+import student.management.StudentManagement.data.StudentSuggestion;
 import student.management.StudentManagement.data.StudentsCourse;
 import student.management.StudentManagement.domain.StudentDetail;
+import student.management.StudentManagement.domain.StudentFields;
+import student.management.StudentManagement.domain.StudentJsonPage;
+import student.management.StudentManagement.exception.CourseStatusQueueClosedException;
+import student.management.StudentManagement.exception.CourseStatusQueueFullException;
+import student.management.StudentManagement.exception.StudentNotFoundException;
+import student.management.StudentManagement.exception.StudentVersionConflictException;
 import student.management.StudentManagement.repository.StudentRepository;
+import student.management.StudentManagement.service.CourseStatusWriteBehind;
+import student.management.StudentManagement.service.StudentArchiveService;
+import student.management.StudentManagement.service.StudentBulkRegistrationService;
 import student.management.StudentManagement.service.StudentService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /*Modelを使用する際は、この場合はui.Modelを選択する（間違って別のものを選ばないようにする）*/
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,12 +53,19 @@ import java.util.Map;
 public class StudentController {
 
     private StudentService service;
+    private StudentBulkRegistrationService bulkRegistrationService;
     private StudentRepository repository;
+    private CourseStatusWriteBehind courseStatusWriteBehind;
+    private StudentArchiveService archiveService;
     private static final Logger log = LoggerFactory.getLogger(StudentController.class);
 
     @Autowired
-    public StudentController(StudentService service) {
+    public StudentController(StudentService service, StudentBulkRegistrationService bulkRegistrationService,
+                             CourseStatusWriteBehind courseStatusWriteBehind, StudentArchiveService archiveService) {
         this.service = service;
+        this.bulkRegistrationService = bulkRegistrationService;
+        this.courseStatusWriteBehind = courseStatusWriteBehind;
+        this.archiveService = archiveService;
     }
 
     /*@Autowiredとは、Springフレームワークで用いるアノテーションのひとつ。これを記述するだけで
@@ -47,12 +75,57 @@ public class StudentController {
     記載するだけでインスタンスとして成立させている。尚、this.service = service;
     this.converter = converterはStudentServiceとStudentConverterをこのクラスに紐づけている。*/
 
-    @Operation(summary = "受講生の一覧検索", description = "全ての受講生の一覧を検索する。")
+    /*次ページのカーソルを返すレスポンスヘッダー名*/
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /*エクスポートで使用するNDJSONのメディアタイプ*/
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    @Operation(summary = "受講生の一覧検索",
+            description = "全ての受講生の一覧を検索する。limitまたはafterを指定した場合はID順にページ単位で返し、"
+                    + "次ページのカーソルをX-Next-Cursorヘッダーで返す。"
+                    + "fieldsを指定した場合は指定した項目のみを返す（例：fields=id,studentName,region）。"
+                    + "If-None-MatchのETagが一致する場合は304を返す。")
     @GetMapping("/studentList")
-    public ResponseEntity<List<StudentDetail>> getAllStudents() {
-        // サービス層で全ての学生とそのコースデータを取得
-        List<StudentDetail> allStudentDetails = service.getAllStudentsWithCourseStatuses();
-        return ResponseEntity.ok(allStudentDetails);
+    public ResponseEntity<?> getAllStudents(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String fields,
+            WebRequest webRequest) {
+        // 検索前のバージョンでETagを作成し、一致する場合は検索もシリアライズも行わずに304を返す。
+        // ETagのバージョンより古い内容を返さないよう、検索はレプリカではなくプライマリで行う
+        if (webRequest.checkNotModified(service.getStudentsEtag())) {
+            return null;
+        }
+        if (fields == null && limit == null && after == null) {
+            // サービス層で全ての学生とそのコースデータを取得（受講生ごとのシリアライズ済みJSONを連結する）
+            byte[] allStudentDetails = service.getAllStudentsWithCourseStatusesJson();
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(allStudentDetails);
+        }
+
+        StudentJsonPage page;
+        try {
+            page = fields == null
+                    ? service.getStudentPageJson(after, limit)
+                    : ReadYourWrites.onPrimary(() -> service.getStudentListJson(StudentFields.parse(fields), after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getJson());
+    }
+
+    @Operation(summary = "受講生一覧のエクスポート",
+            description = "削除されていない全ての受講生をNDJSON（１行に１受講生）でストリーミング出力する。")
+    @GetMapping(value = "/studentList/export", produces = NDJSON_VALUE)
+    public void exportStudents(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        service.exportStudents(response.getOutputStream());
     }
 
     /*@ModelAttributeは一般的にHTTPのGETメソッドで使用されるが、POSTメソッドでも使用できる。
@@ -70,7 +143,16 @@ public class StudentController {
     }
     /*public ResponseEntity<String>とするとnullになるので注意すること*/
 
-    @Operation(summary = "受講生更新", description = "受講生の更新を個人検索画面から行う。")
+    @Operation(summary = "受講生一括登録", description = "複数の受講生をまとめて登録し、１件ごとの登録結果を返す。")
+    @PostMapping("/registerStudents")
+    public ResponseEntity<List<StudentRegistrationResult>> registerStudents(
+            @RequestBody List<StudentDetail> studentDetails) {
+        List<StudentRegistrationResult> results = bulkRegistrationService.registerStudents(studentDetails);
+        return ResponseEntity.ok(results);
+    }
+
+    @Operation(summary = "受講生更新",
+            description = "受講生の更新を個人検索画面から行う。受講生・コースのversionが取得時から変わっている場合は409を返す。")
     @PostMapping("/student/{id}")
     public ResponseEntity<?> updateStudentWithCourses(
             @PathVariable Long id,
@@ -90,6 +172,8 @@ public class StudentController {
         try {
             service.updateStudentWithCourses(studentDetail);
             return ResponseEntity.ok("学生情報とコース情報の更新に成功しました。");
+        } catch (StudentVersionConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("更新が競合しました: " + e.getMessage());
         } catch (IllegalStateException e) {
             return ResponseEntity.status(400).body("更新処理が失敗しました: " + e.getMessage());
         } catch (Exception e) {
@@ -98,50 +182,187 @@ public class StudentController {
     }
 
 
-    @Operation(summary = "受講生検索", description = "受講生をIDで検索する")
+    @Operation(summary = "受講生検索",
+            description = "受講生をIDで検索する。If-None-MatchのETagが一致する場合は304を返す。"
+                    + "IDで検索する場合、Accept-Encodingにgzipが含まれていればキャッシュ済みのgzip圧縮したJSONを返す"
+                    + "（ETagは圧縮の有無で異なる）。")
     @GetMapping("/student")
-    public StudentDetail searchStudent(
+    public ResponseEntity<?> searchStudent(
             @RequestParam(required = false) Integer studentId,
-            @RequestParam(required = false) String gender) {  // 性別も検索条件に追加
+            @RequestParam(required = false) String gender,  // 性別も検索条件に追加
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest,
+            HttpServletResponse servletResponse) {
         if (studentId == null && gender == null) {
             throw new IllegalArgumentException("studentId or gender is required");
         }
+        // IDで検索する場合はAccept-Encodingによってgzip圧縮した本文を返すため、圧縮の有無でETagを分け、
+        // 304を含む全てのレスポンスにVary: Accept-Encodingを付ける
+        boolean gzip = studentId != null && acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        String etag = service.getStudentsEtag();
+        if (studentId != null) {
+            servletResponse.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (gzip) {
+                etag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+            }
+        }
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
 
         System.out.println("Received studentId: " + studentId + " and gender: " + gender);
 
-        // サービス層での処理
-        return service.searchStudent(studentId, gender);
+        if (studentId == null) {
+            // サービス層での処理（ETagを付けて返すため、プライマリで検索する）
+            return ResponseEntity.ok(ReadYourWrites.onPrimary(() -> service.searchStudent(null, gender)));
+        }
+
+        // IDで検索する場合はシリアライズ済みのJSONをそのまま返す
+        byte[] json = service.searchStudentJson(studentId, gzip);
+        if (json == null) {
+            return ResponseEntity.ok().build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(json);
+    }
+
+    @Operation(summary = "受講状況の統計",
+            description = "削除されていない受講生について、コース名・受講状況・地域・性別ごとの件数を返す。")
+    @GetMapping("/stats")
+    public EnrollmentStatsDTO getEnrollmentStats() {
+        return service.getEnrollmentStats();
+    }
+
+    @Operation(summary = "受講生詳細キャッシュの統計", description = "受講生詳細キャッシュのヒット率などを確認する。")
+    @GetMapping("/studentCache/stats")
+    public Map<String, Object> getStudentCacheStats() {
+        return service.getStudentCacheStats();
+    }
+
+    @Operation(summary = "アーカイブの実行状況",
+            description = "論理削除した受講生のアーカイブについて、移動した件数・スループット・対象の残り件数などを返す。")
+    @GetMapping("/archival/stats")
+    public ArchivalStatsDTO getArchivalStats() {
+        return archiveService.getStats();
     }
 
-    @Operation(summary = "受講生の性別による検索", description = "性別で受講生を検索する")
+    @Operation(summary = "アーカイブした受講生の復元",
+            description = "アーカイブした受講生をコース情報・受講状況ごと元のIDで戻す。アーカイブにない場合は404、"
+                    + "同じID・メールアドレスの受講生が既に存在する場合は400を返す。")
+    @PostMapping("/students/{studentId}/restore")
+    public ResponseEntity<String> restoreStudent(@PathVariable Integer studentId) {
+        try {
+            archiveService.restore(studentId);
+            return ResponseEntity.ok("受講生を復元しました");
+        } catch (StudentNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Operation(summary = "受講生の性別による検索",
+            description = "性別で受講生を検索する。fieldsを指定した場合は指定した項目のみを返す。")
     @GetMapping("/studentList/gender")
-    public ResponseEntity<List<StudentDetail>> getStudentsByGender(@RequestParam String gender) {
+    public ResponseEntity<?> getStudentsByGender(
+            @RequestParam String gender,
+            @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            StudentFields studentFields;
+            try {
+                studentFields = StudentFields.parse(fields);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                    .body(service.searchStudentsByGenderJson(gender, studentFields));
+        }
         List<StudentDetail> studentDetails = service.searchStudentsByGender(gender);
         return ResponseEntity.ok(studentDetails);
     }
 
-    @Operation(summary = "受講生のコース名による検索", description = "コース名で受講生を検索する")
+    @Operation(summary = "受講生のコース名による検索",
+            description = "コース名で受講生を検索する。fieldsを指定した場合は指定した項目のみを返す。")
     @GetMapping("/studentList/course")
-    public ResponseEntity<List<StudentDetail>> getStudentsByCourse(
-            @RequestParam("courseName") String courseName) {
+    public ResponseEntity<?> getStudentsByCourse(
+            @RequestParam("courseName") String courseName,
+            @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            StudentFields studentFields;
+            try {
+                studentFields = StudentFields.parse(fields);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                    .body(service.searchStudentsByCourseNameJson(courseName, studentFields));
+        }
         List<StudentDetail> studentDetails = service.searchStudentsByCourseName(courseName);
         return ResponseEntity.ok(studentDetails);
     }
 
-    @Operation(summary = "受講生受講状況",description = "受講生受講状況を確認する。")
+    @Operation(summary = "受講生の部分一致検索",
+            description = "氏名・フリガナ（name）とコース名（courseName）の部分一致で受講生を検索する。両方指定した場合は両方に一致する受講生を返す。"
+                    + "fieldsを指定した場合は指定した項目のみを返す。")
+    @GetMapping("/studentList/search")
+    public ResponseEntity<?> searchStudentsByText(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String courseName,
+            @RequestParam(required = false) String fields) {
+        try {
+            if (fields != null) {
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                        .body(service.searchStudentsByTextJson(name, courseName, StudentFields.parse(fields)));
+            }
+            return ResponseEntity.ok(service.searchStudentsByText(name, courseName));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Operation(summary = "受講生の入力補完",
+            description = "フリガナ・氏名・ニックネームの先頭部分（prefix）から受講生の候補を返す。"
+                    + "ひらがな・カタカナ、全角・半角の違いは区別しない。")
+    @GetMapping("/students/suggest")
+    public List<StudentSuggestion> suggestStudents(
+            @RequestParam String prefix,
+            @RequestParam(required = false) Integer limit) {
+        return service.suggestStudents(prefix, limit);
+    }
+
+    @Operation(summary = "受講生受講状況",description = "受講生受講状況を確認する。If-None-MatchのETagが一致する場合は304を返す。")
     @GetMapping("/student/{studentId}/courses/status")
-    public List<CourseStatusDTO> getStudentCourseStatus(@PathVariable Integer studentId) {
-        return service.getStudentCourseStatus(studentId);
+    public List<CourseStatusDTO> getStudentCourseStatus(@PathVariable Integer studentId, WebRequest webRequest) {
+        if (webRequest.checkNotModified(service.getCourseStatusEtag())) {
+            return null;
+        }
+        // ETagのバージョンより古い内容を返さないよう、プライマリで検索する
+        return ReadYourWrites.onPrimary(() -> service.getStudentCourseStatus(studentId));
     }
 
-    @Operation(summary = "受講生受講状況更新",description = "受講生受講状況を更新する。")
+    @Operation(summary = "受講生受講状況更新",
+            description = "受講生受講状況を更新する。書き込み遅延が有効な場合は更新をキューに入れて202を返し、"
+                    + "キューが満杯で空かない場合や停止処理中の場合は503とRetry-Afterを返す。")
     @PutMapping("/courses/status")
     public ResponseEntity<String> updateStudentCourseStatus(@RequestBody CourseStatusUpdateRequest request) {
+        if (courseStatusWriteBehind.isEnabled()) {
+            try {
+                courseStatusWriteBehind.submit(request.getStudentsCoursesId(), request.getStatus());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+            return ResponseEntity.accepted().body("受講状況の更新を受け付けました");
+        }
         service.updateStudentCourseStatus(request.getStudentsCoursesId(), request.getStatus());
         return ResponseEntity.ok("受講状況を更新しました");
     }
 
-    @Operation(summary = "受講生更新", description = "受講生情報を更新する。")
+    @Operation(summary = "受講生更新",
+            description = "受講生情報を更新する。受講生のversionが取得時から変わっている場合は409を返す。")
     @PutMapping("/updateStudents")
     public ResponseEntity<?> updateStudent(@RequestBody @Valid StudentDetail studentDetail) {
         log.info("Updating student: {}", studentDetail);
@@ -156,6 +377,32 @@ public class StudentController {
         return ResponseEntity.ok("Update successful");
     }
 
+    /*楽観的ロックの競合。最新の受講生情報を取得し直してから更新するよう409 Conflictを返す*/
+    @ExceptionHandler(StudentVersionConflictException.class)
+    public ResponseEntity<String> handleVersionConflict(StudentVersionConflictException e) {
+        log.warn("更新の競合: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+
+    /*受講状況の書き込み遅延キューが満杯、または停止処理中。時間をおいて再送するよう503 Service UnavailableとRetry-Afterを返す*/
+    @ExceptionHandler({CourseStatusQueueFullException.class, CourseStatusQueueClosedException.class})
+    public ResponseEntity<String> handleCourseStatusQueueFull(RuntimeException e) {
+        log.warn("受講状況の更新を受け付けられません: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(courseStatusWriteBehind.retryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    /*処理時間の予算（student.admission.endpoints.*.budget）を超えてSQLがタイムアウトした。
+     * 過負荷のため、時間をおいて再送するよう503 Service UnavailableとRetry-Afterを返す*/
+    @ExceptionHandler(QueryTimeoutException.class)
+    public ResponseEntity<String> handleQueryTimeout(QueryTimeoutException e) {
+        log.warn("処理時間の予算を超えました: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("処理が混み合っています。時間をおいて再度実行してください");
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleException(Exception e) {
         // エラーログを詳細に出力
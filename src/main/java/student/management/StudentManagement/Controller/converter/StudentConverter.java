@@ -7,44 +7,62 @@ import student.management.StudentManagement.data.StudentsCourse;
 import student.management.StudentManagement.domain.StudentDetail;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /*受講生詳細を受講生や受講生コース情報、もしくはその逆の変換を行うコンバーター*/
 @Component
 public class StudentConverter {
+    /*受講生コース情報のグルーピングを並列で行う件数の閾値。
+    * これより少ない場合はスレッドの切り替えの方がコストが大きいため逐次で処理する。*/
+    static final int PARALLEL_THRESHOLD = 50_000;
+
     /*受講生に紐づく受講生コース情報をマッピングする。
-    * 受講生コース情報は受講生に対して複数存在するのでループを回して受講生詳細情報を組み立てる。
+    * 受講生コース情報は受講生に対して複数存在するため、先に受講生IDごとにまとめてから
+    * 受講生詳細情報を組み立てる（受講生ごとに全コースを走査しないので件数に比例した時間で済む）。
     * @param students 受講生一覧
     * @param studentsCourses 受講生コース情報のリスト
     * @return 受講生詳細情報のリスト*/
     public List<StudentDetail> convertStudentDetails
     (List<Student> students, List<StudentsCourse> studentsCourses) {
-        List<StudentDetail> studentDetails = new ArrayList<>();
+        Map<Integer, List<StudentsCourse>> coursesByStudentId = groupByStudentId(studentsCourses);
+
+        List<StudentDetail> studentDetails = new ArrayList<>(students.size());
         students.forEach(student -> {
             StudentDetail studentDetail = new StudentDetail();
             studentDetail.setStudent(student);
 
-            List<StudentsCourse> convertstudentsCourseList = studentsCourses.stream()
-                    .filter(studentCourse -> student.getId().equals(studentCourse.getStudentId()))
-                    .collect(Collectors.toList());
-            /*SQLにコース登録の失敗で積み重なったNullが表示されていたため、サーバーエラーが発生していた。
-            *.filter(studentCourse -> studentCourse.getStudentId() != null)を使うことで
-            *NULLのデータを除外できる*/
-
-            studentDetail.setStudentCourseList(convertstudentsCourseList);
+            List<StudentsCourse> convertstudentsCourseList = coursesByStudentId.get(student.getId());
+            studentDetail.setStudentCourseList(
+                    convertstudentsCourseList != null ? convertstudentsCourseList : new ArrayList<>());
             studentDetails.add(studentDetail);
         });
 
-        // デバッグ用ログ
-        studentDetails.forEach(detail -> {
-            System.out.println("Student: " + detail.getStudent().getId());
-            detail.getStudentCourseList().forEach(course ->
-                    System.out.println("Course: " + course.getCourseName()));
-        });
-
         return studentDetails;
     }
+
+    /*受講生コース情報を受講生IDごとにまとめる。各受講生のコースは元のリストの順序を保つ。
+    * SQLにコース登録の失敗で積み重なったNullが表示されていたため、サーバーエラーが発生していた。
+    * studentIdがnullのデータはどの受講生にも紐づかないので除外する。*/
+    private Map<Integer, List<StudentsCourse>> groupByStudentId(List<StudentsCourse> studentsCourses) {
+        if (studentsCourses.size() >= PARALLEL_THRESHOLD) {
+            return studentsCourses.parallelStream()
+                    .filter(studentCourse -> studentCourse.getStudentId() != null)
+                    .collect(Collectors.groupingBy(StudentsCourse::getStudentId));
+        }
+
+        Map<Integer, List<StudentsCourse>> coursesByStudentId = new HashMap<>();
+        for (StudentsCourse studentCourse : studentsCourses) {
+            if (studentCourse.getStudentId() != null) {
+                coursesByStudentId.computeIfAbsent(studentCourse.getStudentId(), id -> new ArrayList<>())
+                        .add(studentCourse);
+            }
+        }
+        return coursesByStudentId;
+    }
+
     public Student convertStudentDetailToStudent(StudentDetail detail) {
         return detail.getStudent();
     }
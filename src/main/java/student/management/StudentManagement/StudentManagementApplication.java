@@ -5,9 +5,11 @@ import io.swagger.v3.oas.annotations.info.Info;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @MapperScan("student.management.StudentManagement.repository")
 @SpringBootApplication
+@EnableScheduling // 論理削除した受講生のアーカイブ・受講状況の履歴の圧縮を定期実行する
 @OpenAPIDefinition(info = @Info(title = "受講生管理システム"))
 public class StudentManagementApplication {
     public static void main(String[] args) {
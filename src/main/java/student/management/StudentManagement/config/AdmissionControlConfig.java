@@ -0,0 +1,30 @@
+package student.management.StudentManagement.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/*エンドポイントごとの流量制御（AdmissionControlInterceptor）をSpring MVCに登録する*/
+@Configuration
+public class AdmissionControlConfig implements WebMvcConfigurer {
+
+    private final AdmissionControlInterceptor admissionControlInterceptor;
+
+    public AdmissionControlConfig(AdmissionControlInterceptor admissionControlInterceptor) {
+        this.admissionControlInterceptor = admissionControlInterceptor;
+    }
+
+    /*student.admission.*の設定（インターセプターより先に作成するためstatic）*/
+    @Bean
+    @ConfigurationProperties("student.admission")
+    public static AdmissionControlProperties admissionControlProperties() {
+        return new AdmissionControlProperties();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionControlInterceptor);
+    }
+}
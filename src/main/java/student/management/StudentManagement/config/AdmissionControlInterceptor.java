@@ -0,0 +1,140 @@
+package student.management.StudentManagement.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/*エンドポイントごとの流量制御（AdmissionControlPropertiesで設定する）。
+ * トークンバケットで１秒あたりのリクエスト数を、セマフォで同時に処理するリクエスト数を制限し、
+ * 超えたリクエストは待たせずに429 Too Many RequestsとRetry-Afterを返す。
+ * 一覧取得など重いエンドポイントがコネクションを使い切り、受講状況の更新などが待たされるのを防ぐ。
+ * budgetを設定したエンドポイントは、処理中のSQLのタイムアウトを予算の残り時間にする（StatementTimeoutInterceptor）。
+ * http.admission（endpoint・outcome=admitted／rate_limited／concurrency_limited）と
+ * http.admission.in-flight（処理中のリクエスト数）を記録する。*/
+@Component
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+
+    private static final String ADMITTED_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".ADMITTED";
+
+    private final boolean enabled;
+    /*「メソッド URIパターン」ごとの制限*/
+    private final Map<String, EndpointLimiter> limiters = new HashMap<>();
+
+    public AdmissionControlInterceptor(AdmissionControlProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        properties.getEndpoints().forEach((name, endpoint) -> {
+            if (endpoint.getPath() == null) {
+                throw new IllegalArgumentException("student.admission.endpoints." + name + ".path is required");
+            }
+            String key = endpoint.getMethod().toUpperCase() + " " + endpoint.getPath();
+            limiters.put(key, new EndpointLimiter(key, endpoint, meterRegistry));
+        });
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (!enabled || request.getAttribute(ADMITTED_ATTRIBUTE) != null) {
+            return true;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        EndpointLimiter limiter = pattern == null ? null : limiters.get(request.getMethod() + " " + pattern);
+        if (limiter == null) {
+            return true;
+        }
+
+        if (limiter.bucket != null) {
+            long waitNanos = limiter.bucket.tryAcquire();
+            if (waitNanos > 0) {
+                limiter.rateLimited.increment();
+                reject(response, Duration.ofNanos(waitNanos), "リクエストが多すぎます。時間をおいて再度実行してください");
+                return false;
+            }
+        }
+        if (limiter.permits != null && !limiter.permits.tryAcquire()) {
+            limiter.concurrencyLimited.increment();
+            reject(response, Duration.ofSeconds(1), "同時に処理できるリクエスト数を超えています。時間をおいて再度実行してください");
+            return false;
+        }
+
+        limiter.admitted.increment();
+        request.setAttribute(ADMITTED_ATTRIBUTE, limiter);
+        if (limiter.budget != null) {
+            RequestBudget.begin(limiter.budget);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ADMITTED_ATTRIBUTE) instanceof EndpointLimiter limiter) {
+            request.removeAttribute(ADMITTED_ATTRIBUTE);
+            if (limiter.permits != null) {
+                limiter.permits.release();
+            }
+            RequestBudget.end();
+        }
+    }
+
+    private static void reject(HttpServletResponse response, Duration retryAfter, String message) throws IOException {
+        long seconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(message);
+    }
+
+    /*エンドポイント１つ分の制限とメーター*/
+    private static final class EndpointLimiter {
+
+        private final TokenBucket bucket;
+        private final Semaphore permits;
+        private final Duration budget;
+        private final Counter admitted;
+        private final Counter rateLimited;
+        private final Counter concurrencyLimited;
+
+        EndpointLimiter(String key, AdmissionControlProperties.Endpoint endpoint, MeterRegistry meterRegistry) {
+            this.bucket = endpoint.getRate() > 0
+                    ? new TokenBucket(endpoint.getRate(),
+                    endpoint.getBurst() > 0 ? endpoint.getBurst() : Math.max(1, endpoint.getRate()))
+                    : null;
+            this.permits = endpoint.getMaxConcurrent() > 0 ? new Semaphore(endpoint.getMaxConcurrent()) : null;
+            this.budget = endpoint.getBudget();
+            this.admitted = counter(meterRegistry, key, "admitted");
+            this.rateLimited = counter(meterRegistry, key, "rate_limited");
+            this.concurrencyLimited = counter(meterRegistry, key, "concurrency_limited");
+            if (permits != null) {
+                int maxConcurrent = endpoint.getMaxConcurrent();
+                Gauge.builder("http.admission.in-flight", permits, p -> maxConcurrent - p.availablePermits())
+                        .description("Requests being processed under the endpoint's concurrency cap")
+                        .tag("endpoint", key)
+                        .register(meterRegistry);
+            }
+        }
+
+        private static Counter counter(MeterRegistry meterRegistry, String key, String outcome) {
+            return Counter.builder("http.admission")
+                    .description("Requests admitted or shed by per-endpoint admission control")
+                    .tag("endpoint", key)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+}
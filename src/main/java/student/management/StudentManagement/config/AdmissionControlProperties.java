@@ -0,0 +1,45 @@
+package student.management.StudentManagement.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*エンドポイントごとの流量制御の設定（student.admission.*）。
+ * endpointsのキーは設定をまとめるための任意の名前で、methodとpath（@GetMappingなどのURIパターン）で対象を指定する。
+ * 例：student.admission.endpoints.student-list.path=/studentList*/
+@Getter
+@Setter
+public class AdmissionControlProperties {
+
+    /*falseの場合は全てのリクエストを受け付ける（既定はfalse）*/
+    private boolean enabled = false;
+
+    private Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Endpoint {
+
+        /*HTTPメソッド*/
+        private String method = "GET";
+
+        /*URIパターン（コントローラーのマッピングと同じ文字列）*/
+        private String path;
+
+        /*１秒あたりに受け付けるリクエスト数（トークンバケットの補充速度）。0の場合は制限しない*/
+        private double rate;
+
+        /*連続して受け付けられるリクエスト数（トークンバケットの容量）。0の場合はrateと同じ（最低１）*/
+        private int burst;
+
+        /*同時に処理するリクエスト数の上限。0の場合は制限しない*/
+        private int maxConcurrent;
+
+        /*リクエストの処理時間の予算。指定した場合、SQLのタイムアウトを予算の残り時間にする。
+         * 件数に比例して時間がかかるエンドポイント（ページングしない一覧など）には指定しない*/
+        private Duration budget;
+    }
+}
@@ -0,0 +1,21 @@
+package student.management.StudentManagement.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/*Jacksonの設定。
+ * student.json.blackbird.enabled=trueの場合、Blackbirdモジュールを登録し、StudentDetailなどの
+ * getter・setterの呼び出しをリフレクションではなく実行時に生成したアクセサで行う。
+ * （Spring BootはModuleのBeanを自動的にObjectMapperへ登録する）*/
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "student.json.blackbird.enabled", havingValue = "true")
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
@@ -1,34 +1,91 @@
 package student.management.StudentManagement.config;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.SqlSessionFactoryBean;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.mybatis.spring.SqlSessionTemplate;
 import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 @MapperScan("student.management.repository") // MyBatis Mapperのパッケージ
 public class MyBatisConfig {
 
+    /*コネクションプール（Hikari）の設定。spring.datasource.hikari.*（プールサイズ、接続タイムアウト、
+     * data-source-properties.*によるプリペアドステートメントのキャッシュ等）を反映する*/
     @Bean
-    public DataSource dataSource() {
-        return DataSourceBuilder.create()
-                .url("jdbc:mysql://localhost:3306/StudentManagement?useUnicode=true&characterEncoding=UTF-8&serverTimezone=UTC")
-                .username("root")
-                .password("your_password")  // 必要に応じて設定
-                .driverClassName("com.mysql.cj.jdbc.Driver")
-                .build();
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariConfig hikariConfig() {
+        return new HikariConfig();
     }
 
+    /*接続先はspring.datasource.url／username／password（application.properties）で設定する。
+     * プールの手前にプールサイズと同じ数のバルクヘッドを置き、待ち時間はstudent.db.bulkhead.acquire-timeoutで指定する。
+     * student.datasource.replica-urlsを指定した場合は、読み取り専用のトランザクションをレプリカに振り分ける
+     * （ReplicaRoutingDataSourceを参照）。レプリカのプールはプライマリと同じspring.datasource.hikari.*の設定で作成する*/
     @Bean
-    public SqlSessionFactory sqlSessionFactory(DataSource dataSource) throws Exception {
+    public DataSource dataSource(DataSourceProperties properties, HikariConfig hikariConfig, MeterRegistry meterRegistry,
+                                 @Value("${student.db.bulkhead.acquire-timeout:PT5S}") Duration acquireTimeout,
+                                 @Value("${student.datasource.replica-urls:}") List<String> replicaUrls,
+                                 @Value("${student.datasource.replica-username:${spring.datasource.username:}}") String replicaUsername,
+                                 @Value("${student.datasource.replica-password:${spring.datasource.password:}}") String replicaPassword,
+                                 @Value("${student.datasource.replica-retry-after:PT30S}") Duration replicaRetryAfter,
+                                 @Value("${student.datasource.read-your-writes-window:PT5S}") Duration readYourWritesWindow) {
+        hikariConfig.setJdbcUrl(properties.determineUrl());
+        hikariConfig.setUsername(properties.determineUsername());
+        hikariConfig.setPassword(properties.determinePassword());
+        hikariConfig.setDriverClassName(properties.determineDriverClassName());
+        hikariConfig.setMetricRegistry(meterRegistry); // hikaricp.connections.*（使用中・待ち数など）を記録する
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariConfig replicaConfig = new HikariConfig();
+            hikariConfig.copyStateTo(replicaConfig);
+            if (hikariConfig.getPoolName() != null) {
+                replicaConfig.setPoolName(hikariConfig.getPoolName() + "-replica-" + replicas.size());
+            }
+            replicaConfig.setJdbcUrl(url.trim());
+            replicaConfig.setUsername(replicaUsername);
+            replicaConfig.setPassword(replicaPassword);
+            replicaConfig.setInitializationFailTimeout(-1); // レプリカが停止していても起動できるようにする
+            replicas.add(new HikariDataSource(replicaConfig));
+        }
+
+        HikariDataSource pool = new HikariDataSource(hikariConfig);
+        DataSource primary = new BulkheadDataSource(pool, hikariConfig.getMaximumPoolSize(), acquireTimeout, meterRegistry);
+        if (replicas.isEmpty()) {
+            return primary;
+        }
+        return new LazyRoutingDataSource(new ReplicaRoutingDataSource(
+                primary, replicas, replicaRetryAfter, readYourWritesWindow, meterRegistry));
+    }
+
+    @Bean
+    public SqlSessionFactory sqlSessionFactory(DataSource dataSource,
+                                               MyBatisMetricsInterceptor metricsInterceptor,
+                                               StatementTimeoutInterceptor statementTimeoutInterceptor) throws Exception {
         SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
         factoryBean.setDataSource(dataSource);
+        // Mapperメソッドごとのメトリクスを記録し、処理時間の予算があるリクエストではSQLのタイムアウトを設定する
+        factoryBean.setPlugins(metricsInterceptor, statementTimeoutInterceptor);
         return factoryBean.getObject();
     }
 
@@ -41,4 +98,18 @@ public class MyBatisConfig {
     public PlatformTransactionManager transactionManager(DataSource dataSource) {
         return new DataSourceTransactionManager(dataSource);
     }
+
+    /*接続の取得を最初のSQLの実行時まで遅らせ、その時点のトランザクションの読み取り専用の指定で接続先を決める。
+     * アプリケーション終了時にプライマリとレプリカのコネクションプールを閉じる*/
+    static class LazyRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+        LazyRoutingDataSource(ReplicaRoutingDataSource routingDataSource) {
+            super(routingDataSource);
+        }
+
+        @Override
+        public void close() throws IOException {
+            ((ReplicaRoutingDataSource) obtainTargetDataSource()).close();
+        }
+    }
 }
@@ -0,0 +1,121 @@
+package student.management.StudentManagement.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*MyBatisのMapperメソッド（MappedStatementのID）ごとに、実行時間・件数・エラー数をMicrometerに記録するプラグイン。
+ * mybatis.statement：実行時間（ヒストグラム付き）
+ * mybatis.statement.rows：SELECTで取得した件数／INSERT・UPDATE・DELETEで更新した件数
+ * mybatis.statement.errors：例外が発生した回数
+ * あわせてRequestStatementCounterにより、HTTPリクエストごとの実行回数も数える。
+ * 実行回数はJDBCのステートメントの作成（StatementHandler.prepare）で数えるため、
+ * Executorを経由しないネストしたselect（@Many(select = ...)など）も含まれる。*/
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor",
+                args = {MappedStatement.class, Object.class, RowBounds.class}),
+        @Signature(type = Executor.class, method = "update",
+                args = {MappedStatement.class, Object.class}),
+        @Signature(type = StatementHandler.class, method = "prepare",
+                args = {Connection.class, Integer.class})
+})
+public class MyBatisMetricsInterceptor implements Interceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    /*MappedStatementのIDごとのメーター。実行のたびにレジストリを検索しないよう保持する*/
+    private final Map<String, StatementMeters> meters = new ConcurrentHashMap<>();
+
+    public MyBatisMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (invocation.getTarget() instanceof StatementHandler) {
+            RequestStatementCounter.increment();
+            return invocation.proceed();
+        }
+
+        MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+        StatementMeters statementMeters = meters.computeIfAbsent(mappedStatement.getId(),
+                id -> new StatementMeters(id, mappedStatement.getSqlCommandType().name()));
+
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            statementMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            long rows = rowCount(result);
+            if (rows >= 0) {
+                statementMeters.rows.record(rows);
+            }
+            return result;
+        } catch (Throwable e) {
+            statementMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            Counter.builder("mybatis.statement.errors")
+                    .description("Number of MyBatis statements that threw an exception")
+                    .tag("statement", mappedStatement.getId())
+                    .tag("exception", e.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+            throw e;
+        }
+    }
+
+    /*結果の件数を返す。Cursorは読み進めるまで件数が分からず、BATCHエグゼキュータの更新件数は
+     * フラッシュ時まで確定しない（負の値が返る）ため、いずれも-1とする*/
+    private long rowCount(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Integer updated && updated >= 0) {
+            return updated;
+        }
+        return -1;
+    }
+
+    private final class StatementMeters {
+        private final Timer timer;
+        private final DistributionSummary rows;
+
+        private StatementMeters(String statementId, String command) {
+            this.timer = Timer.builder("mybatis.statement")
+                    .description("Execution time of MyBatis statements")
+                    .tag("statement", statementId)
+                    .tag("command", command)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.rows = DistributionSummary.builder("mybatis.statement.rows")
+                    .description("Rows returned or affected by MyBatis statements")
+                    .baseUnit("rows")
+                    .tag("statement", statementId)
+                    .tag("command", command)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package student.management.StudentManagement.config;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/*書き込みをコミットしたクライアントの読み取りを、一定時間プライマリに固定する（read-your-writes）。
+ * レプリカは遅れて更新されるため、登録・更新の直後にレプリカから読むと変更前のデータが返ることがある。
+ * 書き込みをコミットするとPRIMARY_UNTIL_COOKIEに固定する期限（エポックミリ秒）を返し、
+ * ReadYourWritesFilterが次のリクエストでその期限を読み取って、期限までの読み取りをプライマリで処理させる。
+ * 同じリクエスト内で書き込みの後に行う読み取りもプライマリで処理する。
+ * キャッシュに保存する値やETagを付けて返す値の読み込みは、onPrimaryでリクエストに関係なくプライマリで処理する。
+ * リクエスト外（起動時の処理や書き込み遅延キューのスレッドなど）では固定しない。*/
+public final class ReadYourWrites {
+
+    /*読み取りをプライマリに固定する期限（エポックミリ秒）を保持するクッキー名*/
+    public static final String PRIMARY_UNTIL_COOKIE = "primary-until";
+
+    private static final ThreadLocal<State> STATE = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> ON_PRIMARY = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    static void begin(HttpServletResponse response, long primaryUntilMillis) {
+        STATE.set(new State(response, primaryUntilMillis));
+    }
+
+    static void end() {
+        STATE.remove();
+    }
+
+    /*actionの中の読み取りをプライマリで処理する。
+     * レプリカは遅れて更新されるため、書き込みの直後にレプリカから読み込んだ値をキャッシュに保存したり、
+     * 更新後のバージョン（ChangeVersions）のETagを付けて返したりすると、次の書き込みまで古い値が返り続ける。
+     * 接続先は最初のSQLの実行時に決まるため、actionの中で最初のSQLを実行すること。
+     * @param action 読み取りを行う処理
+     * @return actionの結果*/
+    public static <T> T onPrimary(Supplier<T> action) {
+        if (Boolean.TRUE.equals(ON_PRIMARY.get())) {
+            return action.get();
+        }
+        ON_PRIMARY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            ON_PRIMARY.remove();
+        }
+    }
+
+    /*現在のリクエストの読み取りをプライマリで処理する必要がある場合はtrue*/
+    static boolean isPinnedToPrimary() {
+        if (Boolean.TRUE.equals(ON_PRIMARY.get())) {
+            return true;
+        }
+        State state = STATE.get();
+        return state != null && state.primaryUntilMillis > System.currentTimeMillis();
+    }
+
+    /*書き込みのコミットを記録し、window（read-your-writes-window）の間このクライアントの読み取りをプライマリに固定する*/
+    static void recordWrite(Duration window) {
+        State state = STATE.get();
+        if (state == null || window.isZero() || window.isNegative()) {
+            return;
+        }
+        state.primaryUntilMillis = System.currentTimeMillis() + window.toMillis();
+        if (!state.response.isCommitted()) {
+            Cookie cookie = new Cookie(PRIMARY_UNTIL_COOKIE, Long.toString(state.primaryUntilMillis));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, (window.toMillis() + 999) / 1000));
+            state.response.addCookie(cookie);
+        }
+    }
+
+    private static final class State {
+
+        private final HttpServletResponse response;
+        private long primaryUntilMillis;
+
+        State(HttpServletResponse response, long primaryUntilMillis) {
+            this.response = response;
+            this.primaryUntilMillis = primaryUntilMillis;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package student.management.StudentManagement.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/*リクエストのクッキーからプライマリに固定する期限を読み取り、ReadYourWritesに設定するフィルタ。
+ * レプリカを設定していない場合は書き込みを記録しないため、クッキーも返さない。
+ * クッキーは署名していないためクライアントが書き換えられる。期限は現在時刻＋read-your-writes-windowまでに制限し、
+ * 遠い将来の期限を送って全ての読み取りをプライマリに向けることはできないようにする。*/
+@Component
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private final Duration readYourWritesWindow;
+
+    public ReadYourWritesFilter(
+            @Value("${student.datasource.read-your-writes-window:PT5S}") Duration readYourWritesWindow) {
+        this.readYourWritesWindow = readYourWritesWindow;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ReadYourWrites.begin(response, primaryUntil(request));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.end();
+        }
+    }
+
+    private long primaryUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (ReadYourWrites.PRIMARY_UNTIL_COOKIE.equals(cookie.getName())) {
+                try {
+                    long maxUntil = System.currentTimeMillis() + Math.max(0, readYourWritesWindow.toMillis());
+                    return Math.min(Long.parseLong(cookie.getValue()), maxUntil);
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,193 @@
+package student.management.StudentManagement.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import student.management.StudentManagement.service.AfterCommit;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*読み取り専用のトランザクション（@Transactional(readOnly = true)）をレプリカに、それ以外をプライマリに振り分けるDataSource。
+ * レプリカはラウンドロビンで選び、接続に失敗したレプリカはretry-afterの間は選ばずにプライマリで処理する。
+ * 次の場合は読み取り専用でもプライマリを使用する。
+ * ・トランザクション外の問い合わせ（自動コミット）
+ * ・書き込みをコミットしたクライアントのread-your-writes-windowの間（ReadYourWritesを参照）
+ * ・キャッシュに保存する値やETagを付けて返す値の読み込み（ReadYourWrites.onPrimary）
+ * トランザクションの開始時点では読み取り専用かどうかが確定していないため、
+ * LazyConnectionDataSourceProxyで包み、最初のSQLの実行時に接続先を決める。
+ * db.routing.connections（接続先ごとの取得数）・db.replica.healthy（選択可能なレプリカ数）・
+ * db.replica.failures（レプリカへの接続の失敗数）を記録する。*/
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long retryAfterNanos;
+    private final Duration readYourWritesWindow;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter primaryConnections;
+    private final Counter failures;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources, Duration retryAfter,
+                                    Duration readYourWritesWindow, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.retryAfterNanos = retryAfter.toNanos();
+        this.readYourWritesWindow = readYourWritesWindow;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        List<Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            String name = "replica-" + i;
+            targets.put(name, replicaDataSources.get(i));
+            replicas.add(new Replica(name, replicaDataSources.get(i), Counter.builder("db.routing.connections")
+                    .description("Connections acquired through the read/write routing data source")
+                    .tag("target", name)
+                    .register(meterRegistry)));
+        }
+        this.replicas = List.copyOf(replicas);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+
+        this.primaryConnections = Counter.builder("db.routing.connections")
+                .description("Connections acquired through the read/write routing data source")
+                .tag("target", PRIMARY)
+                .register(meterRegistry);
+        this.failures = Counter.builder("db.replica.failures")
+                .description("Failed connection attempts to a read replica")
+                .register(meterRegistry);
+        Gauge.builder("db.replica.healthy", this, routing -> routing.replicas.stream().filter(Replica::isHealthy).count())
+                .description("Read replicas that are currently eligible for read-only transactions")
+                .register(meterRegistry);
+    }
+
+    /*接続先のキー（PRIMARYまたはレプリカ名）。選択できるレプリカがない場合はPRIMARY*/
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || ReadYourWrites.isPinnedToPrimary()) {
+            return PRIMARY;
+        }
+        Replica replica = nextHealthyReplica();
+        return replica == null ? PRIMARY : replica.name();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        for (Replica replica : replicas) {
+            if (replica.name().equals(key)) {
+                try {
+                    Connection connection = replica.dataSource().getConnection();
+                    replica.connections().increment();
+                    return connection;
+                } catch (SQLException e) {
+                    replica.markDown(System.nanoTime() + retryAfterNanos);
+                    failures.increment();
+                    log.warn("Read replica {} is unavailable for {}, falling back to the primary: {}",
+                            replica.name(), Duration.ofNanos(retryAfterNanos), e.getMessage());
+                }
+                break;
+            }
+        }
+        return primaryConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    private Connection primaryConnection() throws SQLException {
+        Connection connection = primary.getConnection();
+        primaryConnections.increment();
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // 書き込みのコミット後、このクライアントの読み取りを一定時間プライマリに固定する
+            AfterCommit.run(() -> ReadYourWrites.recordWrite(readYourWritesWindow));
+        }
+        return connection;
+    }
+
+    /*ラウンドロビンで次の選択可能なレプリカを選ぶ（全て停止中の場合はnull）*/
+    private Replica nextHealthyReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.isHealthy()) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /*アプリケーション終了時にプライマリとレプリカのコネクションプールを閉じる*/
+    @Override
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            if (replica.dataSource() instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    /*レプリカ１台分の接続先と状態。downUntilはSystem.nanoTimeで、この時刻まで選択しない*/
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final Counter connections;
+        private volatile long downUntil;
+        private volatile boolean down;
+
+        Replica(String name, DataSource dataSource, Counter connections) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.connections = connections;
+        }
+
+        String name() {
+            return name;
+        }
+
+        DataSource dataSource() {
+            return dataSource;
+        }
+
+        Counter connections() {
+            return connections;
+        }
+
+        boolean isHealthy() {
+            return !down || System.nanoTime() - downUntil >= 0;
+        }
+
+        void markDown(long until) {
+            downUntil = until;
+            down = true;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package student.management.StudentManagement.config;
+
+import java.time.Duration;
+
+/*HTTPリクエストの処理時間の予算（期限）。
+ * AdmissionControlInterceptorが予算を設定したエンドポイントの処理の開始時にbegin、終了時にendを呼び出し、
+ * StatementTimeoutInterceptorが予算の残り時間をSQLのタイムアウトにする。
+ * リクエスト外（起動時の処理や定期実行など）では期限を設けない。*/
+public final class RequestBudget {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private RequestBudget() {
+    }
+
+    static void begin(Duration budget) {
+        DEADLINE.set(System.nanoTime() + budget.toNanos());
+    }
+
+    static void end() {
+        DEADLINE.remove();
+    }
+
+    /*期限が設定されている場合はtrue*/
+    static boolean isActive() {
+        return DEADLINE.get() != null;
+    }
+
+    /*期限までの残り時間（ナノ秒）。期限を過ぎている場合は0以下*/
+    static long remainingNanos() {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? Long.MAX_VALUE : deadline - System.nanoTime();
+    }
+}
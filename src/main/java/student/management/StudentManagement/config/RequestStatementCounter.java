@@ -0,0 +1,30 @@
+package student.management.StudentManagement.config;
+
+/*HTTPリクエストを処理しているスレッドで実行されたSQLの回数を数える。
+ * RequestStatementMetricsFilterがリクエストの開始時にbegin、終了時にendを呼び出す。
+ * リクエスト外（起動時の処理など）で実行されたSQLは数えない。*/
+public final class RequestStatementCounter {
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    private RequestStatementCounter() {
+    }
+
+    static void begin() {
+        COUNT.set(new int[1]);
+    }
+
+    /*数え終えて実行回数を返す*/
+    static int end() {
+        int[] count = COUNT.get();
+        COUNT.remove();
+        return count == null ? 0 : count[0];
+    }
+
+    static void increment() {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package student.management.StudentManagement.config;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+/*処理時間の予算（RequestBudget）が設定されたリクエストで、SQLのタイムアウトを予算の残り時間にするプラグイン。
+ * JDBCのタイムアウトは秒単位のため切り上げる（最低１秒）。Mapperで指定したタイムアウトの方が短い場合はそちらを使う。
+ * 予算を使い切った後のSQLは実行せずにSQLTimeoutExceptionとする（QueryTimeoutExceptionに変換される）。*/
+@Component
+@Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+public class StatementTimeoutInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (!RequestBudget.isActive()) {
+            return invocation.proceed();
+        }
+        long remaining = RequestBudget.remainingNanos();
+        if (remaining <= 0) {
+            throw new SQLTimeoutException("Request budget exhausted before the statement was executed");
+        }
+
+        Statement statement = (Statement) invocation.proceed();
+        int seconds = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (remaining + 999_999_999L) / 1_000_000_000L));
+        int current = statement.getQueryTimeout();
+        if (current == 0 || seconds < current) {
+            statement.setQueryTimeout(seconds);
+        }
+        return statement;
+    }
+}
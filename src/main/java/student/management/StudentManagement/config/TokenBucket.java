@@ -0,0 +1,30 @@
+package student.management.StudentManagement.config;
+
+/*トークンバケット。１秒あたりrate個のトークンを容量capacityまで補充し、リクエストごとに１個消費する。*/
+final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double rate, double capacity) {
+        this.tokensPerNano = rate / 1e9;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /*トークンを１個消費する。
+     * @return 消費できた場合は0、できなかった場合は次のトークンが補充されるまでのナノ秒*/
+    synchronized long tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+}
@@ -0,0 +1,30 @@
+package student.management.StudentManagement.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/*論理削除した受講生のアーカイブの実行状況（アプリケーションの起動以降の累計と、直近の実行）。
+ * studentsPerSecondはアーカイブのトランザクションに要した時間あたりの受講生数。*/
+@Getter
+@AllArgsConstructor
+public class ArchivalStatsDTO {
+    private boolean enabled;
+    private Duration retention;
+    private int chunkSize;
+    private long pendingStudents;
+    private long runs;
+    private long chunks;
+    private long failedChunks;
+    private long archivedStudents;
+    private long archivedCourses;
+    private long archivedStatuses;
+    private long restoredStudents;
+    private double studentsPerSecond;
+    private LocalDateTime lastRunStartedAt;
+    private Duration lastRunDuration;
+    private long lastRunStudents;
+    private String lastError;
+}
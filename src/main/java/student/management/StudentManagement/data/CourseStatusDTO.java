@@ -1,5 +1,6 @@
 package student.management.StudentManagement.data;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -19,6 +20,10 @@ public class CourseStatusDTO {
     private String status;
     private Integer courseId;
 
+    /*一括取得時に受講生へ紐づけるためのID。レスポンスには含めない*/
+    @JsonIgnore
+    private Integer studentId;
+
     // 引数を受け取るコンストラクタを追加
     public CourseStatusDTO(Integer studentsCoursesId, String status) {
         this.studentsCoursesId = studentsCoursesId;
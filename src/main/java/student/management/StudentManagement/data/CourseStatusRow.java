@@ -0,0 +1,16 @@
+package student.management.StudentManagement.data;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/*受講状況の履歴（students_courses_status）の１行分のデータ（履歴の圧縮で使用する）*/
+@Getter
+@Setter
+public class CourseStatusRow {
+    private Integer id;
+    private Integer studentsCoursesId;
+    private String status;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,21 @@
+package student.management.StudentManagement.data;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/*圧縮した受講状況の履歴（students_courses_status_history）の１行分のデータ。
+ * 同じ受講生コースで同じ受講状況が続いた区間（firstStatusId〜lastStatusId）を表す。*/
+@Getter
+@Setter
+public class CourseStatusRun {
+    private Integer id;
+    private Integer studentsCoursesId;
+    private String status;
+    private Integer firstStatusId;
+    private Integer lastStatusId;
+    private int transitions;
+    private LocalDateTime firstAt;
+    private LocalDateTime lastAt;
+}
@@ -0,0 +1,19 @@
+package student.management.StudentManagement.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+/*受講状況の統計（削除されていない受講生が対象）。
+ * コース名・受講状況（最新）ごとの件数は受講生コース単位、地域・性別ごとの件数は受講生単位で数える。*/
+@Getter
+@AllArgsConstructor
+public class EnrollmentStatsDTO {
+    private long totalStudents;
+    private long totalCourses;
+    private Map<String, Long> byCourse;
+    private Map<String, Long> byStatus;
+    private Map<String, Long> byRegion;
+    private Map<String, Long> byGender;
+}
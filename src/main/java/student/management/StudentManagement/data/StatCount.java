@@ -0,0 +1,12 @@
+package student.management.StudentManagement.data;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/*集計結果の１行（集計のキーと件数）*/
+@Getter
+@Setter
+public class StatCount {
+    private String label;
+    private long count;
+}
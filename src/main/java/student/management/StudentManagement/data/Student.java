@@ -75,6 +75,11 @@ public class Student {
     @JsonProperty("isDeleted")
     private Boolean isDeleted;//論理削除
 
+    /*楽観的ロックのバージョン。取得した値を更新時にそのまま送ると、その間に他の更新があった場合は409を返す。
+    * 指定しない場合は確認せずに上書きする*/
+    @JsonProperty("version")
+    private Integer version;
+
     // デフォルトコンストラクタ（必須）
     public Student() {
         /*テストコードを使用する際の引数なしのデフォルトコンストラクタ。
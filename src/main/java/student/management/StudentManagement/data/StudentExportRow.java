@@ -0,0 +1,30 @@
+package student.management.StudentManagement.data;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/*受講生一覧のエクスポートで使用する１行分のデータ。
+ * 受講生・受講生コース情報・最新の受講状況を結合した結果で、
+ * 受講生がコースを複数持つ場合は受講生の項目が行ごとに繰り返される。*/
+@Getter
+@Setter
+public class StudentExportRow {
+    private Integer studentId;
+    private String studentName;
+    private String furigana;
+    private String nickname;
+    private String email;
+    private String region;
+    private Integer age;
+    private String gender;
+    private String remark;
+    private Boolean isDeleted;
+
+    private Integer courseId;
+    private String courseName;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private String status;
+}
@@ -0,0 +1,23 @@
+package student.management.StudentManagement.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/*受講生一括登録における１件ごとの登録結果。
+ * indexはリクエストのリスト内での位置、studentIdは登録に成功した場合に採番された受講生ID。*/
+@Getter
+@AllArgsConstructor
+public class StudentRegistrationResult {
+    private int index;
+    private boolean success;
+    private Integer studentId;
+    private String message;
+
+    public static StudentRegistrationResult succeeded(int index, Integer studentId) {
+        return new StudentRegistrationResult(index, true, studentId, "登録に成功しました。");
+    }
+
+    public static StudentRegistrationResult failed(int index, String message) {
+        return new StudentRegistrationResult(index, false, null, message);
+    }
+}
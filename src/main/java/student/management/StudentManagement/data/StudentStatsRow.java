@@ -0,0 +1,17 @@
+package student.management.StudentManagement.data;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/*受講生の統計への寄与を求めるための１行分のデータ。
+ * 受講生・受講生コース情報・最新の受講状況を結合した結果で、コースごとに１行となる。*/
+@Getter
+@Setter
+public class StudentStatsRow {
+    private Integer studentId;
+    private String region;
+    private String gender;
+    private Boolean isDeleted;
+    private String courseName;
+    private String status;
+}
@@ -0,0 +1,15 @@
+package student.management.StudentManagement.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/*受講生の入力補完（サジェスト）の候補。
+ * 一覧表示と受講生の特定に必要な項目のみを持つ。*/
+@Getter
+@AllArgsConstructor
+public class StudentSuggestion {
+    private Integer studentId;
+    private String studentName;
+    private String furigana;
+    private String nickname;
+}
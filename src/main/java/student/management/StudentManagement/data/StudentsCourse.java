@@ -46,6 +46,10 @@ public class StudentsCourse {
     @JsonProperty("endDate")
     private LocalDate endDate;
 
+    /*楽観的ロックのバージョン（受講生のversionと同じ扱い）*/
+    @JsonProperty("version")
+    private Integer version;
+
     /*startDateとendDateをString形式で出力するためのカスタムシリアライズ処理*/
     @JsonFormat(pattern = "yyyy-MM-dd")
     public LocalDate getStartDate() {
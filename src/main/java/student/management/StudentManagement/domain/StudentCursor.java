@@ -0,0 +1,45 @@
+package student.management.StudentManagement.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/*受講生一覧のページングで使用するカーソル。
+ * クライアントには前ページ最後の受講生IDをそのまま見せず、不透明な文字列として渡す。*/
+public final class StudentCursor {
+
+    private static final String PREFIX = "v1:";
+
+    private StudentCursor() {
+    }
+
+    /*受講生IDをカーソル文字列に変換する。
+     * @param lastStudentId ページ最後の受講生ID
+     * @return カーソル文字列*/
+    public static String encode(int lastStudentId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastStudentId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /*カーソル文字列を受講生IDに戻す。カーソルが未指定の場合は先頭ページ（0）とする。
+     * @param cursor カーソル文字列
+     * @return 前ページ最後の受講生ID*/
+    public static int decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            int lastStudentId = Integer.parseInt(decoded.substring(PREFIX.length()));
+            if (lastStudentId < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return lastStudentId;
+        } catch (IllegalArgumentException e) {
+            // Base64やIDの形式が不正な場合（NumberFormatExceptionも含む）
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
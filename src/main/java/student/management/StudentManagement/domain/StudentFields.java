@@ -0,0 +1,144 @@
+package student.management.StudentManagement.domain;
+
+import student.management.StudentManagement.data.Student;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*受講生一覧・検索で返す項目（fields=パラメータ。例：fields=id,studentName,region）。
+ * 受講生の項目はStudentFieldの名前、コース情報はstudentCourseList、受講状況はcourseStatusesで指定する。
+ * SELECTする列は指定された受講生の項目のみとし（idは常に含める）、studentCourseList・courseStatusesを
+ * 指定しない場合はコース情報・受講状況を取得しない。
+ * SQLに埋め込む列名はStudentFieldに定義したもののみで、リクエストの文字列をそのままSQLに含めることはない。*/
+public final class StudentFields {
+
+    public static final String COURSES = "studentCourseList";
+    public static final String COURSE_STATUSES = "courseStatuses";
+
+    /*全ての項目*/
+    public static final StudentFields ALL = new StudentFields(EnumSet.allOf(StudentField.class), true, true);
+
+    /*受講生の項目。JSONのプロパティ名・studentsテーブルの列名・値の取得方法*/
+    public enum StudentField {
+        ID("id", "id", Student::getId),
+        STUDENT_NAME("studentName", "name", Student::getStudentName),
+        FURIGANA("furigana", "furigana", Student::getFurigana),
+        NICKNAME("nickname", "nickname", Student::getNickname),
+        EMAIL("email", "email", Student::getEmail),
+        REGION("region", "region", Student::getRegion),
+        AGE("age", "age", Student::getAge),
+        GENDER("gender", "gender", Student::getGender),
+        REMARK("remark", "remark", Student::getRemark),
+        IS_DELETED("isDeleted", "isdeleted", Student::getIsDeleted),
+        VERSION("version", "version", Student::getVersion);
+
+        private final String property;
+        private final String column;
+        private final Function<Student, Object> getter;
+
+        StudentField(String property, String column, Function<Student, Object> getter) {
+            this.property = property;
+            this.column = column;
+            this.getter = getter;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        public Object get(Student student) {
+            return getter.apply(student);
+        }
+
+        /*SELECT句に書く列（プロパティ名と異なる場合は別名を付ける）*/
+        String selectColumn(String tableAlias) {
+            String qualified = tableAlias == null ? column : tableAlias + "." + column;
+            return column.equalsIgnoreCase(property) ? qualified : qualified + " AS " + property;
+        }
+    }
+
+    private final Set<StudentField> studentFields;
+    private final boolean courses;
+    private final boolean courseStatuses;
+
+    private StudentFields(Set<StudentField> studentFields, boolean courses, boolean courseStatuses) {
+        this.studentFields = Collections.unmodifiableSet(studentFields);
+        this.courses = courses;
+        this.courseStatuses = courseStatuses;
+    }
+
+    /*fields=パラメータ（カンマ区切り）を解析する。
+     * @throws IllegalArgumentException 項目が空、または存在しない項目を指定した場合*/
+    public static StudentFields parse(String fields) {
+        Set<StudentField> studentFields = EnumSet.of(StudentField.ID);
+        boolean courses = false;
+        boolean courseStatuses = false;
+        List<String> unknown = new ArrayList<>();
+        boolean empty = true;
+
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            empty = false;
+            if (COURSES.equals(trimmed)) {
+                courses = true;
+            } else if (COURSE_STATUSES.equals(trimmed)) {
+                courseStatuses = true;
+            } else {
+                StudentField field = findField(trimmed);
+                if (field == null) {
+                    unknown.add(trimmed);
+                } else {
+                    studentFields.add(field);
+                }
+            }
+        }
+
+        if (empty) {
+            throw new IllegalArgumentException("fields must not be empty");
+        }
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Unknown fields: " + unknown + ". Available fields: "
+                    + EnumSet.allOf(StudentField.class).stream().map(StudentField::getProperty).toList()
+                    + ", " + COURSES + ", " + COURSE_STATUSES);
+        }
+        return new StudentFields(studentFields, courses, courseStatuses);
+    }
+
+    private static StudentField findField(String property) {
+        for (StudentField field : StudentField.values()) {
+            if (field.property.equals(property)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /*SELECT句の列のリスト（StudentFieldの定義順）。
+     * @param tableAlias studentsテーブルの別名（別名を付けない場合はnull）*/
+    public String selectList(String tableAlias) {
+        return studentFields.stream()
+                .map(field -> field.selectColumn(tableAlias))
+                .collect(Collectors.joining(", "));
+    }
+
+    /*返す受講生の項目（StudentFieldの定義順）*/
+    public Set<StudentField> getStudentFields() {
+        return studentFields;
+    }
+
+    public boolean includesCourses() {
+        return courses;
+    }
+
+    public boolean includesCourseStatuses() {
+        return courseStatuses;
+    }
+}
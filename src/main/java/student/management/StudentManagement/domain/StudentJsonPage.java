@@ -0,0 +1,13 @@
+package student.management.StudentManagement.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/*受講生一覧の１ページ分をシリアライズ済みのJSON（受講生詳細の配列）として保持する。
+ * nextCursorは次ページがない場合はnull。*/
+@Getter
+@AllArgsConstructor
+public class StudentJsonPage {
+    private byte[] json;
+    private String nextCursor;
+}
@@ -0,0 +1,15 @@
+package student.management.StudentManagement.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/*受講生一覧の１ページ分。
+ * nextCursorは次ページを取得するためのカーソルで、最終ページの場合はnullとなる。*/
+@Getter
+@AllArgsConstructor
+public class StudentPage {
+    private List<StudentDetail> studentDetails;
+    private String nextCursor;
+}
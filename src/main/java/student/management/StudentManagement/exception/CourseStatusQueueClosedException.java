@@ -0,0 +1,8 @@
+package student.management.StudentManagement.exception;
+
+/*受講状況の更新キュー（write-behind）が停止処理に入り、新しい更新を受け付けない場合に発生する*/
+public class CourseStatusQueueClosedException extends RuntimeException {
+    public CourseStatusQueueClosedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package student.management.StudentManagement.exception;
+
+/*受講状況の更新キュー（write-behind）が上限に達し、待機時間内に空きができなかった場合に発生する*/
+public class CourseStatusQueueFullException extends RuntimeException {
+    public CourseStatusQueueFullException(String message) {
+        super(message);
+    }
+}
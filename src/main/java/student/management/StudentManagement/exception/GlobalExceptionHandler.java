@@ -40,6 +40,13 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
 
+    /*受講生情報更新時に楽観的ロックが競合した際の例外処理。409 Conflictを表示させる*/
+    @ExceptionHandler(StudentVersionConflictException.class)
+    public ResponseEntity<String> handleStudentVersionConflictException(StudentVersionConflictException ex) {
+        logger.warn("更新の競合: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
     /*受講生情報登録時の例外処理。500 Internal Server Errorを表示させる*/
     @ExceptionHandler(StudentRegistrationException.class)
     public ResponseEntity<String> handleStudentRegistrationException(StudentRegistrationException ex) {
@@ -0,0 +1,12 @@
+package student.management.StudentManagement.exception;
+
+/*外部の受講生APIの呼び出しに失敗した際の例外（接続エラー、タイムアウト、200番台以外の応答、JSONの解析エラー）*/
+public class StudentApiException extends RuntimeException {
+    public StudentApiException(String message) {
+        super(message);
+    }
+
+    public StudentApiException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,8 @@
+package student.management.StudentManagement.exception;
+
+/*楽観的ロックの競合。更新時に指定したversionが、読み込んだ後の他の更新によって変わっていた場合に発生する*/
+public class StudentVersionConflictException extends RuntimeException {
+    public StudentVersionConflictException(String message) {
+        super(message);
+    }
+}
@@ -1,16 +1,25 @@
 package student.management.StudentManagement.repository;
 
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
 import org.apache.ibatis.type.LocalDateTypeHandler;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import student.management.StudentManagement.data.StudentsWithCourses;
 import student.management.StudentManagement.data.CourseStatusDTO;
+import student.management.StudentManagement.data.CourseStatusRow;
+import student.management.StudentManagement.data.CourseStatusRun;
 import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.data.StatCount;
+import student.management.StudentManagement.data.StudentExportRow;
+import student.management.StudentManagement.data.StudentStatsRow;
 import student.management.StudentManagement.data.StudentsCourse;
 import student.management.StudentManagement.data.StudentsCourseWithStatus;
 import student.management.StudentManagement.domain.StudentDetail;
+import student.management.StudentManagement.domain.StudentFields;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -70,15 +79,7 @@ public interface StudentRepository {
                        latest_status.status, sc.id AS courseId
                 FROM students s
                 LEFT JOIN students_courses sc ON s.id = sc.student_id
-                LEFT JOIN (
-                    SELECT scs1.students_courses_id, scs1.status
-                    FROM students_courses_status scs1
-                    JOIN (
-                        SELECT students_courses_id, MAX(id) AS latest_id
-                        FROM students_courses_status
-                        GROUP BY students_courses_id
-                    ) latest ON scs1.id = latest.latest_id
-                ) latest_status ON sc.id = latest_status.students_courses_id
+                LEFT JOIN students_courses_latest_status latest_status ON sc.id = latest_status.students_courses_id
                 <where>
                     <if test="studentId != null">
                         AND s.id = #{studentId}
@@ -132,19 +133,11 @@ public interface StudentRepository {
      * JOINを行う場合の競合を避けることが可能。また、JAVAでの処理も簡単になる。
      * 全てのリストを表示する場合、カラムにエイリアスをつけなければnullと表示されてしまうので注意すること。*/
 
-    /*コース受講状況を取得。常に最新のものを取得する*/
+    /*コース受講状況を取得。常に最新のもの（最新の受講状況の射影）を取得する*/
     @Select("""
             SELECT sc.id AS studentsCoursesId, sc.course_name AS courseName, latest_status.status, sc.id AS courseId
             FROM students_courses sc
-            LEFT JOIN (
-                SELECT scs1.students_courses_id, scs1.status
-                FROM students_courses_status scs1
-                JOIN (
-                    SELECT students_courses_id, MAX(id) AS latest_id
-                    FROM students_courses_status
-                    GROUP BY students_courses_id
-                ) latest ON scs1.id = latest.latest_id
-            ) latest_status ON sc.id = latest_status.students_courses_id
+            LEFT JOIN students_courses_latest_status latest_status ON sc.id = latest_status.students_courses_id
             WHERE sc.student_id = #{studentId}
             """)
     List<CourseStatusDTO> findStudentCourseStatus(@Param("studentId") Integer studentId);
@@ -158,78 +151,54 @@ public interface StudentRepository {
     void updateStudentCourseStatus(@Param("studentsCoursesId") Integer studentsCoursesId,
                                    @Param("status") String status);
 
-    /*受講生リストの取得。sはstudentテーブル、scはstudents_coursesテーブル、scsは
-     * students_courses_statusテーブルのエイリアス。DISTINCT を使用して重複する行を防ぎつつ、
-     * students_courses_status テーブルからのステータス情報も取得している*/
-    @Select("SELECT DISTINCT " +
-            "s.id AS student_id, s.name AS studentName,s.furigana, s.nickname, s.email, s.region, s.age, s.gender, s.remark, s.isDeleted, " +
-            "sc.id AS course_id, sc.start_date AS startDate, sc.end_date AS endDate, sc.course_name, " +
-            "scs.students_courses_id, scs.status " +
-            "FROM students s " +
-            "LEFT JOIN students_courses sc ON s.id = sc.student_id " +
-            "LEFT JOIN students_courses_status scs ON sc.id = scs.students_courses_id")
-    @Results({
-            @Result(property = "student.id", column = "student_id"),
-            @Result(property = "student.studentName", column = "studentName"),
-            @Result(property = "student.furigana", column = "furigana"),
-            @Result(property = "student.nickname", column = "nickname"),
-            @Result(property = "student.email", column = "email"),
-            @Result(property = "student.region", column = "region"),
-            @Result(property = "student.age", column = "age"),
-            @Result(property = "student.gender", column = "gender"),
-            @Result(property = "student.remark", column = "remark"),
-            @Result(property = "student.isDeleted", column = "isDeleted"),
-
-            // studentCourseListを取得
-            @Result(property = "studentCourseList", javaType = List.class, column = "student_id",
-                    many = @Many(select = "getStudentCourses")),
-
-            // courseStatusesを取得
-            @Result(property = "courseStatuses", javaType = List.class, column = "course_id",
-                    many = @Many(select = "getCourseStatuses"))
-    })
+    /*受講生リストの取得。受講生・コース情報・コースごとの最新の受講状況を１回の結合で取得し、
+     * StudentRepository.xmlのresultMap（studentDetailMap）で受講生ごとの受講生詳細にまとめる。
+     * @return 受講生詳細の一覧（ID昇順）*/
     List<StudentDetail> getStudentList();
 
     /*全ての受講生情報を取得する*/
     @Select("""
-                SELECT id, name AS studentName, furigana, nickname, email, region, age, gender, remark, isdeleted
+                SELECT id, name AS studentName, furigana, nickname, email, region, age, gender, remark, isdeleted, version
                 FROM students
             """)
     List<Student> findAllStudents();
 
-    /*受講生の詳細を取得する*/
+    /*削除されていない受講生をID順に指定件数だけ取得する（キーセットページング）。
+     * OFFSETを使わず前ページ最後のIDより後ろから読むため、深いページでも主キーの範囲検索で済む。
+     * @param afterId 前ページ最後の受講生ID（先頭ページは0）
+     * @param limit 取得件数
+     * @return 受講生一覧（ID昇順）*/
     @Select("""
-                SELECT 
-                    s.id AS student_id, s.name AS studentName, s.furigana, s.nickname, s.email, s.region, s.age, 
-                    s.gender, s.remark, s.isDeleted, 
-                    sc.id AS course_id, sc.start_date AS start_date, sc.end_date AS end_date, sc.course_name AS course_name, 
-                    COALESCE(scs.students_courses_id, 0) AS student_course_id, 
-                    COALESCE(scs.status, '未登録') AS course_status 
-                FROM students s
-                LEFT JOIN students_courses sc ON s.id = sc.student_id
-                LEFT JOIN students_courses_status scs ON sc.id = scs.students_courses_id
-                WHERE s.id = #{studentId}
-            """)
-    @Results({
-            @Result(property = "student.id", column = "student_id"),
-            @Result(property = "student.studentName", column = "studentName"),
-            @Result(property = "student.furigana", column = "furigana"),
-            @Result(property = "student.nickname", column = "nickname"),
-            @Result(property = "student.email", column = "email"),
-            @Result(property = "student.region", column = "region"),
-            @Result(property = "student.age", column = "age"),
-            @Result(property = "student.gender", column = "gender"),
-            @Result(property = "student.remark", column = "remark"),
-            @Result(property = "student.isDeleted", column = "isDeleted"),
-
-            // 学生のコース情報を取得
-            @Result(property = "studentCourseList", column = "student_id", javaType = List.class,
-                    many = @Many(select = "getStudentCourses")),
-
-            // コースのステータス情報を取得
-            @Result(property = "courseStatuses", column = "course_id", javaType = List.class,
-                    many = @Many(select = "getCourseStatuses"))
-    })
+                SELECT id, name AS studentName, furigana, nickname, email, region, age, gender, remark, isdeleted, version
+                FROM students
+                WHERE isdeleted = false AND id > #{afterId}
+                ORDER BY id
+                LIMIT #{limit}
+            """)
+    List<Student> findStudentsAfter(@Param("afterId") int afterId, @Param("limit") int limit);
+
+    /*エクスポート用に、削除されていない受講生とコース情報・最新の受講状況を１回の走査で取得する。
+     * 受講生ID・コースID順に並べ、Cursorで１行ずつ読み出すため、件数が増えてもメモリ使用量は一定となる。
+     * （MySQLではURLのuseCursorFetch=trueとfetchSizeの指定でサーバーサイドカーソルを使用する）
+     * @return 受講生とコース情報を結合した行のカーソル*/
+    @Select("""
+            SELECT s.id AS studentId, s.name AS studentName, s.furigana, s.nickname, s.email, s.region, s.age,
+                   s.gender, s.remark, s.isdeleted AS isDeleted,
+                   sc.id AS courseId, sc.course_name AS courseName, sc.start_date AS startDate, sc.end_date AS endDate,
+                   latest_status.status
+            FROM students s
+            LEFT JOIN students_courses sc ON s.id = sc.student_id
+            LEFT JOIN students_courses_latest_status latest_status ON sc.id = latest_status.students_courses_id
+            WHERE s.isdeleted = false
+            ORDER BY s.id, sc.id
+            """)
+    @Options(fetchSize = 1000, resultSetType = ResultSetType.FORWARD_ONLY)
+    Cursor<StudentExportRow> streamStudentsWithCourses();
+
+    /*受講生の詳細を取得する。getStudentListと同じ結合を１人分に絞り、１回の問い合わせで組み立てる
+     * （StudentRepository.xml）。
+     * @param studentId 受講生ID
+     * @return 受講生詳細（存在しない場合はnull）*/
     StudentDetail getStudentDetails(@Param("studentId") Integer studentId);
 
     /*受講生のコース情報を取得する。情報が重複する場合、１つに統一する。*/
@@ -238,7 +207,8 @@ public interface StudentRepository {
                            sc.start_date AS startDate,
                            sc.end_date AS endDate,
                            sc.student_id,
-                           sc.course_name AS courseName
+                           sc.course_name AS courseName,
+                           sc.version
                     FROM students_courses sc
                 WHERE sc.student_id = #{studentId}
                 ORDER BY sc.id DESC LIMIT 1
@@ -260,20 +230,187 @@ public interface StudentRepository {
     List<CourseStatusDTO> getCourseStatuses(@Param("studentId") Integer studentId);
     // 引数を studentId に変更
 
-    /*受講生の最新の受講状況を取得する*/
+    /*受講生の最新の受講状況を取得する。
+     * 受講生コースごとの最新の受講状況（射影）のうち、最後に登録されたものを返す*/
     @Select("""
-            SELECT scs.students_courses_id AS studentsCoursesId, sc.course_name AS courseName, scs.status
-            FROM students_courses_status scs
-            JOIN students_courses sc ON sc.id = scs.students_courses_id
+            SELECT ls.students_courses_id AS studentsCoursesId, sc.course_name AS courseName, ls.status
+            FROM students_courses_latest_status ls
+            JOIN students_courses sc ON sc.id = ls.students_courses_id
             WHERE sc.student_id = #{studentId}
-            ORDER BY scs.id DESC
+            ORDER BY ls.status_id DESC
             LIMIT 1
             """)
     List<CourseStatusDTO> getLatestCourseStatus(@Param("studentId") Integer studentId);
 
+    /*複数の受講生の最新の受講生コース情報をまとめて取得する。
+     * getStudentCoursesを受講生ごとに呼び出す代わりに、IN句で一括取得する。
+     * @param studentIds 受講生IDのリスト
+     * @return 受講生ごとの最新の受講生コース情報（studentIdで紐づける）*/
+    @Select("""
+            <script>
+            SELECT sc.id,
+                   sc.start_date AS startDate,
+                   sc.end_date AS endDate,
+                   sc.student_id AS studentId,
+                   sc.course_name AS courseName,
+                   sc.version
+            FROM students_courses sc
+            JOIN (
+                SELECT MAX(id) AS latest_id
+                FROM students_courses
+                WHERE student_id IN
+                <foreach item="studentId" collection="studentIds" open="(" separator="," close=")">
+                    #{studentId}
+                </foreach>
+                GROUP BY student_id
+            ) latest ON sc.id = latest.latest_id
+            </script>
+            """)
+    List<StudentsCourse> findLatestStudentCoursesByStudentIds(@Param("studentIds") List<Integer> studentIds);
+
+    /*複数の受講生の最新の受講状況をまとめて取得する。
+     * getLatestCourseStatusを受講生ごとに呼び出す代わりに、IN句で一括取得する。
+     * @param studentIds 受講生IDのリスト
+     * @return 受講生ごとの最新の受講状況（studentIdで紐づける）*/
+    @Select("""
+            <script>
+            SELECT sc.student_id AS studentId, ls.students_courses_id AS studentsCoursesId,
+                   sc.course_name AS courseName, ls.status
+            FROM students_courses_latest_status ls
+            JOIN students_courses sc ON sc.id = ls.students_courses_id
+            JOIN (
+                SELECT MAX(ls2.status_id) AS latest_status_id
+                FROM students_courses_latest_status ls2
+                JOIN students_courses sc2 ON sc2.id = ls2.students_courses_id
+                WHERE sc2.student_id IN
+                <foreach item="studentId" collection="studentIds" open="(" separator="," close=")">
+                    #{studentId}
+                </foreach>
+                GROUP BY sc2.student_id
+            ) latest ON ls.status_id = latest.latest_status_id
+            </script>
+            """)
+    List<CourseStatusDTO> findLatestCourseStatusesByStudentIds(@Param("studentIds") List<Integer> studentIds);
+
+    /*削除されていない受講生を受講生IDのリストから主キーで取得する。
+     * @param studentIds 受講生IDのリスト
+     * @return 受講生一覧（ID昇順）*/
+    @Select("""
+            <script>
+            SELECT id, name AS studentName, furigana, nickname, email, region, age, gender, remark, isdeleted, version
+            FROM students
+            WHERE isdeleted = false AND id IN
+            <foreach item="studentId" collection="studentIds" open="(" separator="," close=")">
+                #{studentId}
+            </foreach>
+            ORDER BY id
+            </script>
+            """)
+    List<Student> findStudentsByIds(@Param("studentIds") List<Integer> studentIds);
+
+    /*複数の受講生の全ての受講生コース情報（コース名）をまとめて取得する（検索インデックスの作成用）。
+     * @param studentIds 受講生IDのリスト
+     * @return 受講生コース情報（studentIdで紐づける）*/
+    @Select("""
+            <script>
+            SELECT id, student_id AS studentId, course_name AS courseName
+            FROM students_courses
+            WHERE student_id IN
+            <foreach item="studentId" collection="studentIds" open="(" separator="," close=")">
+                #{studentId}
+            </foreach>
+            </script>
+            """)
+    List<StudentsCourse> findStudentCoursesByStudentIds(@Param("studentIds") List<Integer> studentIds);
+
+    /*氏名・フリガナとコース名の部分一致で、削除されていない受講生のIDを検索する。
+     * 検索インデックスが使用できない場合（作成前・無効時）に使用する。
+     * @param name 氏名またはフリガナ（nullや空文字の場合は条件にしない）
+     * @param courseName コース名（nullや空文字の場合は条件にしない）
+     * @return 受講生IDのリスト（昇順）*/
+    @Select("""
+            <script>
+            SELECT DISTINCT s.id
+            FROM students s
+            <if test="courseName != null and courseName != ''">
+                JOIN students_courses sc ON s.id = sc.student_id
+                AND sc.course_name LIKE CONCAT('%', #{courseName}, '%')
+            </if>
+            WHERE s.isdeleted = false
+            <if test="name != null and name != ''">
+                AND (s.name LIKE CONCAT('%', #{name}, '%') OR s.furigana LIKE CONCAT('%', #{name}, '%'))
+            </if>
+            ORDER BY s.id
+            </script>
+            """)
+    List<Integer> searchStudentIdsByText(@Param("name") String name, @Param("courseName") String courseName);
+
+    /*削除されていない受講生の地域ごとの人数（統計の初期値の読み込み用）*/
+    @Select("""
+            SELECT region AS label, COUNT(*) AS count
+            FROM students
+            WHERE isdeleted = false
+            GROUP BY region
+            """)
+    List<StatCount> countStudentsByRegion();
+
+    /*削除されていない受講生の性別ごとの人数（統計の初期値の読み込み用）*/
+    @Select("""
+            SELECT gender AS label, COUNT(*) AS count
+            FROM students
+            WHERE isdeleted = false
+            GROUP BY gender
+            """)
+    List<StatCount> countStudentsByGender();
+
+    /*削除されていない受講生の受講生コースのコース名ごとの件数（統計の初期値の読み込み用）*/
+    @Select("""
+            SELECT sc.course_name AS label, COUNT(*) AS count
+            FROM students_courses sc
+            JOIN students s ON s.id = sc.student_id
+            WHERE s.isdeleted = false
+            GROUP BY sc.course_name
+            """)
+    List<StatCount> countCoursesByName();
+
+    /*削除されていない受講生の受講生コースの最新の受講状況ごとの件数（統計の初期値の読み込み用）*/
+    @Select("""
+            SELECT ls.status AS label, COUNT(*) AS count
+            FROM students_courses_latest_status ls
+            JOIN students_courses sc ON sc.id = ls.students_courses_id
+            JOIN students s ON s.id = sc.student_id
+            WHERE s.isdeleted = false
+            GROUP BY ls.status
+            """)
+    List<StatCount> countCoursesByStatus();
+
+    /*受講生の統計への寄与（地域・性別・コース名・最新の受講状況）を取得する。
+     * forUpdate=trueの場合は該当行をロックし、同じ受講生を更新する他のトランザクションのコミットを待ってから読む。
+     * @param studentIds 受講生IDのリスト
+     * @param forUpdate 行をロックする場合はtrue
+     * @return 受講生コースごとの行（コースのない受講生は１行）*/
+    @Select("""
+            <script>
+            SELECT s.id AS studentId, s.region, s.gender, s.isdeleted AS isDeleted,
+                   sc.course_name AS courseName, ls.status
+            FROM students s
+            LEFT JOIN students_courses sc ON s.id = sc.student_id
+            LEFT JOIN students_courses_latest_status ls ON sc.id = ls.students_courses_id
+            WHERE s.id IN
+            <foreach item="studentId" collection="studentIds" open="(" separator="," close=")">
+                #{studentId}
+            </foreach>
+            <if test="forUpdate">
+                FOR UPDATE
+            </if>
+            </script>
+            """)
+    List<StudentStatsRow> findStudentStatsRows(@Param("studentIds") List<Integer> studentIds,
+                                               @Param("forUpdate") boolean forUpdate);
+
     /*受講生の情報を性別から取得するためのリポジトリ*/
     @Select("""
-                SELECT id, name AS studentName, furigana, nickname, email, region, age, gender, remark, isdeleted
+                SELECT id, name AS studentName, furigana, nickname, email, region, age, gender, remark, isdeleted, version
                 FROM students
                 WHERE LOWER(gender) = LOWER(#{gender}) AND isdeleted = 0
             """)
@@ -296,6 +433,33 @@ public interface StudentRepository {
             """)
     List<Student> findStudentsByCourseName(@Param("courseName") String courseName);
 
+    /*以下は一覧・検索（findAllStudents・findStudentsAfter・findStudentsByIds・findStudentByGender・
+     * findStudentsByCourseName）と同じ条件で、指定された項目（fields=パラメータ）の列のみを取得する。
+     * 指定されていない項目はnullとなる。SQLはStudentSqlProviderで作成する*/
+
+    /*削除されていない全ての受講生（ID昇順）*/
+    @SelectProvider(type = StudentSqlProvider.class, method = "findStudentColumns")
+    List<Student> findStudentColumns(@Param("fields") StudentFields fields);
+
+    /*削除されていない受講生をID順に指定件数だけ取得する（キーセットページング）*/
+    @SelectProvider(type = StudentSqlProvider.class, method = "findStudentColumnsAfter")
+    List<Student> findStudentColumnsAfter(@Param("fields") StudentFields fields,
+                                          @Param("afterId") int afterId, @Param("limit") int limit);
+
+    /*削除されていない受講生を受講生IDのリストから主キーで取得する（ID昇順）*/
+    @SelectProvider(type = StudentSqlProvider.class, method = "findStudentColumnsByIds")
+    List<Student> findStudentColumnsByIds(@Param("fields") StudentFields fields,
+                                          @Param("studentIds") List<Integer> studentIds);
+
+    /*削除されていない受講生を性別で取得する*/
+    @SelectProvider(type = StudentSqlProvider.class, method = "findStudentColumnsByGender")
+    List<Student> findStudentColumnsByGender(@Param("fields") StudentFields fields, @Param("gender") String gender);
+
+    /*削除されていない受講生をコース名で取得する*/
+    @SelectProvider(type = StudentSqlProvider.class, method = "findStudentColumnsByCourseName")
+    List<Student> findStudentColumnsByCourseName(@Param("fields") StudentFields fields,
+                                                 @Param("courseName") String courseName);
+
     /* 特定のコース名で受講生を取得 */
     @Select("""
                 SELECT
@@ -344,9 +508,50 @@ public interface StudentRepository {
     @Insert("INSERT INTO students_courses_status (students_courses_id, status) VALUES (#{studentsCoursesId}, #{status})")
     void registerCourseStatus(@Param("studentsCoursesId") Integer studentsCoursesId, @Param("status") String status);
 
+    /*受講生コースの最新の受講状況（射影）を受講状況の履歴から更新する。
+     * 受講状況の登録・更新と同じトランザクションで呼び出す。
+     * 既に新しい受講状況が反映されている場合は巻き戻さない。
+     * @param studentsCoursesId 受講生コースID*/
+    @Insert("""
+            INSERT INTO students_courses_latest_status (students_courses_id, status_id, status)
+            SELECT scs.students_courses_id, scs.id, scs.status
+            FROM students_courses_status scs
+            WHERE scs.id = (
+                SELECT MAX(id) FROM students_courses_status WHERE students_courses_id = #{studentsCoursesId}
+            )
+            ON DUPLICATE KEY UPDATE
+                status = CASE WHEN VALUES(status_id) >= status_id THEN VALUES(status) ELSE status END,
+                status_id = GREATEST(status_id, VALUES(status_id))
+            """)
+    int refreshLatestCourseStatus(@Param("studentsCoursesId") Integer studentsCoursesId);
+
+    /*受講生コースIDの範囲を指定して、最新の受講状況（射影）を受講状況の履歴から作成する（既存データの移行用）。
+     * @param fromId 範囲の開始（この値は含まない）
+     * @param toId 範囲の終了（この値を含む）
+     * @return 更新された行数*/
+    @Insert("""
+            INSERT INTO students_courses_latest_status (students_courses_id, status_id, status)
+            SELECT scs.students_courses_id, scs.id, scs.status
+            FROM students_courses_status scs
+            JOIN (
+                SELECT students_courses_id, MAX(id) AS latest_id
+                FROM students_courses_status
+                WHERE students_courses_id > #{fromId} AND students_courses_id <= #{toId}
+                GROUP BY students_courses_id
+            ) latest ON scs.id = latest.latest_id
+            ON DUPLICATE KEY UPDATE
+                status = CASE WHEN VALUES(status_id) >= status_id THEN VALUES(status) ELSE status END,
+                status_id = GREATEST(status_id, VALUES(status_id))
+            """)
+    int backfillLatestCourseStatuses(@Param("fromId") int fromId, @Param("toId") int toId);
+
+    /*受講生コースIDの最大値を取得する（最新の受講状況の移行範囲の決定に使用する）*/
+    @Select("SELECT COALESCE(MAX(id), 0) FROM students_courses")
+    int findMaxStudentsCourseId();
+
     /*受講生情報を受講生IDから取得する*/
     @Select("""
-            SELECT id, name AS studentName, furigana, nickname, email, region, age, gender, remark, isdeleted
+            SELECT id, name AS studentName, furigana, nickname, email, region, age, gender, remark, isdeleted, version
             FROM students
             WHERE id = #{id} AND isdeleted = 0
             """)
@@ -358,7 +563,7 @@ public interface StudentRepository {
     List<Student> findAllStudentsWithCourseStatus();
 
     /*コース情報を受講生idから取得する*/
-    @Select("SELECT id AS courseId,course_name AS courseName, start_date AS startDate, end_date AS endDate " +
+    @Select("SELECT id AS courseId,course_name AS courseName, start_date AS startDate, end_date AS endDate, version " +
             "FROM students_courses WHERE student_id = #{studentId}")
     List<StudentsCourse> findCoursesByStudentId(@Param("studentId") Long studentId);
 
@@ -383,9 +588,13 @@ public interface StudentRepository {
             """)
     List<CourseStatusDTO> findCourseStatusesByStudentId(@Param("studentId") Integer studentId);
 
-    /*受講生情報を更新する。
-     * @param student 受講生*/
+    /*受講生情報を更新する（楽観的ロック）。
+     * versionを指定した場合は、読み込んだ時点からversionが変わっていない場合のみ更新する。
+     * 更新した場合はversionを１つ進める。
+     * @param student 受講生
+     * @return 更新した件数（versionが一致しない場合は０）*/
     @Update("""
+            <script>
                 UPDATE students
                 SET
                 name = #{studentName},
@@ -396,25 +605,43 @@ public interface StudentRepository {
                 age = #{age},
                 gender = #{gender},
                 remark = #{remark},
-                isdeleted = COALESCE(#{isDeleted}, false)
+                isdeleted = COALESCE(#{isDeleted}, false),
+                deleted_at = CASE WHEN COALESCE(#{isDeleted}, false) THEN COALESCE(deleted_at, CURRENT_TIMESTAMP) END,
+                version = version + 1
                 WHERE
                 id = #{id}
+                <if test="version != null">AND version = #{version}</if>
+            </script>
             """)
     int updateStudent(Student student);
 
-    /*受講生コース情報のコース名を更新する。
-     * @param studentCourse 受講生コース情報*/
+    /*受講生コース情報のコース名を更新する（楽観的ロック）。
+     * versionを指定した場合は、読み込んだ時点からversionが変わっていない場合のみ更新する。
+     * @param studentCourse 受講生コース情報
+     * @return 更新した件数（versionが一致しない場合は０）*/
     @Update("""
+            <script>
                 UPDATE students_courses
                 SET
                 course_name = #{courseName},
                 start_date = #{startDate},
-                end_date = #{endDate}
+                end_date = #{endDate},
+                version = version + 1
                 WHERE
                 id = #{courseId}
+                <if test="version != null">AND version = #{version}</if>
+            </script>
             """)
     int updateStudentCourse(StudentsCourse studentsCourse);
 
+    /*受講生の現在のversionを取得する（更新が競合したのか、受講生が存在しないのかの判定に使用する）*/
+    @Select("SELECT version FROM students WHERE id = #{id}")
+    Integer findStudentVersion(@Param("id") Integer id);
+
+    /*受講生コース情報の現在のversionを取得する*/
+    @Select("SELECT version FROM students_courses WHERE id = #{id}")
+    Integer findStudentsCourseVersion(@Param("id") Integer id);
+
     /*受講生コース情報の登録を行う*/
     @Insert("""
                 INSERT INTO students_courses (student_id, course_name, start_date, end_date)
@@ -442,9 +669,265 @@ public interface StudentRepository {
             """)
     StudentDetail findStudentDetailById(@Param("id") Long id);
 
-    /*論理削除を行う*/
-    @Update("UPDATE students SET isdeleted = #{isDeleted} WHERE id = #{id}")
+    /*受講生コースIDから受講生IDを取得する*/
+    @Select("SELECT student_id FROM students_courses WHERE id = #{studentsCoursesId}")
+    Integer findStudentIdByStudentsCoursesId(@Param("studentsCoursesId") Integer studentsCoursesId);
+
+    /*複数の受講生コースIDから受講生IDをまとめて取得する（重複は除く）。
+     * @param studentsCoursesIds 受講生コースIDのリスト
+     * @return 受講生IDの一覧*/
+    @Select("""
+            <script>
+            SELECT DISTINCT student_id
+            FROM students_courses
+            WHERE id IN
+            <foreach item="studentsCoursesId" collection="studentsCoursesIds" open="(" separator="," close=")">
+                #{studentsCoursesId}
+            </foreach>
+            </script>
+            """)
+    List<Integer> findStudentIdsByStudentsCoursesIds(@Param("studentsCoursesIds") List<Integer> studentsCoursesIds);
+
+    /*論理削除を行う（versionも進め、削除前に読み込んだ内容での更新を競合として扱う）。
+     * 削除した日時（deleted_at）を記録し、削除を取り消した場合は消去する*/
+    @Update("""
+            UPDATE students
+            SET isdeleted = #{isDeleted},
+                deleted_at = CASE WHEN #{isDeleted} THEN COALESCE(deleted_at, CURRENT_TIMESTAMP) END,
+                version = version + 1
+            WHERE id = #{id}
+            """)
     void updateIsDeleted(@Param("id") Long id, @Param("isDeleted") boolean isDeleted);
+
+    /*アーカイブの対象（deletedBeforeより前に論理削除された受講生）のIDをID順に取得する。
+     * @param deletedBefore 論理削除した日時の上限
+     * @param limit 最大件数（１回のトランザクションで移動する件数）*/
+    @Select("""
+            SELECT id FROM students
+            WHERE isdeleted = true AND deleted_at < #{deletedBefore}
+            ORDER BY id
+            LIMIT #{limit}
+            """)
+    List<Integer> findArchivableStudentIds(@Param("deletedBefore") LocalDateTime deletedBefore,
+                                           @Param("limit") int limit);
+
+    /*アーカイブの対象の件数を取得する*/
+    @Select("SELECT COUNT(*) FROM students WHERE isdeleted = true AND deleted_at < #{deletedBefore}")
+    long countArchivableStudents(@Param("deletedBefore") LocalDateTime deletedBefore);
+
+    /*アーカイブの対象の受講生を行ロックし、ロックした時点でもまだ対象であるIDを返す
+     * （検索後に削除が取り消された受講生を移動しないようにする）*/
+    @Select("""
+            <script>
+                SELECT id FROM students
+                WHERE isdeleted = true AND deleted_at &lt; #{deletedBefore} AND id IN
+                <foreach item="id" collection="studentIds" open="(" separator="," close=")">#{id}</foreach>
+                ORDER BY id
+                FOR UPDATE
+            </script>
+            """)
+    List<Integer> lockArchivableStudents(@Param("studentIds") List<Integer> studentIds,
+                                         @Param("deletedBefore") LocalDateTime deletedBefore);
+
+    /*受講生の受講状況の履歴をアーカイブテーブルにコピーする*/
+    @Insert("""
+            <script>
+                INSERT INTO students_courses_status_archive (id, students_courses_id, status, created_at)
+                SELECT scs.id, scs.students_courses_id, scs.status, scs.created_at
+                FROM students_courses_status scs
+                JOIN students_courses sc ON scs.students_courses_id = sc.id
+                WHERE sc.student_id IN
+                <foreach item="id" collection="studentIds" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int archiveStudentsCourseStatuses(@Param("studentIds") List<Integer> studentIds);
+
+    /*受講生のコース情報をアーカイブテーブルにコピーする*/
+    @Insert("""
+            <script>
+                INSERT INTO students_courses_archive (id, student_id, course_name, start_date, end_date, version)
+                SELECT id, student_id, course_name, start_date, end_date, version
+                FROM students_courses
+                WHERE student_id IN
+                <foreach item="id" collection="studentIds" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int archiveStudentsCourses(@Param("studentIds") List<Integer> studentIds);
+
+    /*受講生をアーカイブテーブルにコピーする*/
+    @Insert("""
+            <script>
+                INSERT INTO students_archive
+                    (id, name, furigana, nickname, email, region, age, gender, remark, version, deleted_at)
+                SELECT id, name, furigana, nickname, email, region, age, gender, remark, version, deleted_at
+                FROM students
+                WHERE id IN
+                <foreach item="id" collection="studentIds" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int archiveStudents(@Param("studentIds") List<Integer> studentIds);
+
+    /*受講生の最新の受講状況の射影を削除する*/
+    @Delete("""
+            <script>
+                DELETE FROM students_courses_latest_status
+                WHERE students_courses_id IN (
+                    SELECT id FROM students_courses WHERE student_id IN
+                    <foreach item="id" collection="studentIds" open="(" separator="," close=")">#{id}</foreach>
+                )
+            </script>
+            """)
+    int deleteLatestCourseStatusesByStudentIds(@Param("studentIds") List<Integer> studentIds);
+
+    /*受講生の受講状況の履歴を削除する*/
+    @Delete("""
+            <script>
+                DELETE FROM students_courses_status
+                WHERE students_courses_id IN (
+                    SELECT id FROM students_courses WHERE student_id IN
+                    <foreach item="id" collection="studentIds" open="(" separator="," close=")">#{id}</foreach>
+                )
+            </script>
+            """)
+    int deleteStudentsCourseStatusesByStudentIds(@Param("studentIds") List<Integer> studentIds);
+
+    /*受講生のコース情報を削除する*/
+    @Delete("""
+            <script>
+                DELETE FROM students_courses WHERE student_id IN
+                <foreach item="id" collection="studentIds" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int deleteStudentsCoursesByStudentIds(@Param("studentIds") List<Integer> studentIds);
+
+    /*受講生を削除する（コース情報・受講状況は先に削除またはアーカイブしておく）*/
+    @Delete("""
+            <script>
+                DELETE FROM students WHERE id IN
+                <foreach item="id" collection="studentIds" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int deleteStudentsByIds(@Param("studentIds") List<Integer> studentIds);
+
+    /*アーカイブした受講生を、削除されていない受講生として元のIDで戻す（versionは１つ進める）*/
+    @Insert("""
+            INSERT INTO students
+                (id, name, furigana, nickname, email, region, age, gender, remark, isdeleted, version, deleted_at)
+            SELECT id, name, furigana, nickname, email, region, age, gender, remark, false, version + 1, NULL
+            FROM students_archive
+            WHERE id = #{studentId}
+            """)
+    int restoreStudent(@Param("studentId") Integer studentId);
+
+    /*アーカイブした受講生のコース情報を元のIDで戻す*/
+    @Insert("""
+            INSERT INTO students_courses (id, student_id, course_name, start_date, end_date, version)
+            SELECT id, student_id, course_name, start_date, end_date, version
+            FROM students_courses_archive
+            WHERE student_id = #{studentId}
+            """)
+    int restoreStudentsCourses(@Param("studentId") Integer studentId);
+
+    /*アーカイブした受講生の受講状況の履歴を元のIDで戻す*/
+    @Insert("""
+            INSERT INTO students_courses_status (id, students_courses_id, status, created_at)
+            SELECT scsa.id, scsa.students_courses_id, scsa.status, COALESCE(scsa.created_at, CURRENT_TIMESTAMP)
+            FROM students_courses_status_archive scsa
+            JOIN students_courses_archive sca ON scsa.students_courses_id = sca.id
+            WHERE sca.student_id = #{studentId}
+            """)
+    int restoreStudentsCourseStatuses(@Param("studentId") Integer studentId);
+
+    /*アーカイブした受講生のコースIDを取得する（復元後に最新の受講状況の射影を作り直すために使用する）*/
+    @Select("SELECT id FROM students_courses_archive WHERE student_id = #{studentId} ORDER BY id")
+    List<Integer> findArchivedStudentsCourseIds(@Param("studentId") Integer studentId);
+
+    /*復元した受講生をアーカイブテーブルから削除する（受講状況の履歴・コース情報・受講生の順）*/
+    @Delete("""
+            DELETE FROM students_courses_status_archive
+            WHERE students_courses_id IN (SELECT id FROM students_courses_archive WHERE student_id = #{studentId})
+            """)
+    int deleteArchivedStudentsCourseStatuses(@Param("studentId") Integer studentId);
+
+    @Delete("DELETE FROM students_courses_archive WHERE student_id = #{studentId}")
+    int deleteArchivedStudentsCourses(@Param("studentId") Integer studentId);
+
+    @Delete("DELETE FROM students_archive WHERE id = #{studentId}")
+    int deleteArchivedStudent(@Param("studentId") Integer studentId);
+
+    /*受講生コースIDの範囲を指定して、圧縮できる受講状況を行ロックして取得する（受講生コースID・ID順）。
+     * 受講生コースごとに、最新の受講状況とcreatedBefore以降に登録された最初の受講状況のうちIDが小さい方より前の行を対象とする。
+     * 残す行より前の行のみを対象とするため、圧縮した履歴は常に残した受講状況より古い区間になる。
+     * @param fromId 範囲の開始（この値は含まない）
+     * @param toId 範囲の終了（この値を含む）
+     * @param createdBefore 監査期間の開始日時*/
+    @Select("""
+            SELECT scs.id, scs.students_courses_id AS studentsCoursesId, scs.status, scs.created_at AS createdAt
+            FROM students_courses_status scs
+            JOIN (
+                SELECT students_courses_id,
+                       COALESCE(MIN(CASE WHEN created_at >= #{createdBefore} THEN id END), MAX(id)) AS keep_from_id
+                FROM students_courses_status
+                WHERE students_courses_id > #{fromId} AND students_courses_id <= #{toId}
+                GROUP BY students_courses_id
+            ) keep ON scs.students_courses_id = keep.students_courses_id
+            WHERE scs.students_courses_id > #{fromId} AND scs.students_courses_id <= #{toId}
+              AND scs.id < keep.keep_from_id
+            ORDER BY scs.students_courses_id, scs.id
+            FOR UPDATE
+            """)
+    List<CourseStatusRow> lockCompactableCourseStatuses(@Param("fromId") int fromId, @Param("toId") int toId,
+                                                        @Param("createdBefore") LocalDateTime createdBefore);
+
+    /*受講生コースごとの圧縮した履歴の最後の区間を取得する*/
+    @Select("""
+            <script>
+                SELECT h.id, h.students_courses_id AS studentsCoursesId, h.status,
+                       h.first_status_id AS firstStatusId, h.last_status_id AS lastStatusId, h.transitions,
+                       h.first_at AS firstAt, h.last_at AS lastAt
+                FROM students_courses_status_history h
+                JOIN (
+                    SELECT students_courses_id, MAX(last_status_id) AS last_status_id
+                    FROM students_courses_status_history
+                    WHERE students_courses_id IN
+                    <foreach item="id" collection="studentsCoursesIds" open="(" separator="," close=")">#{id}</foreach>
+                    GROUP BY students_courses_id
+                ) last_run ON h.students_courses_id = last_run.students_courses_id
+                          AND h.last_status_id = last_run.last_status_id
+            </script>
+            """)
+    List<CourseStatusRun> findLastCourseStatusRuns(@Param("studentsCoursesIds") List<Integer> studentsCoursesIds);
+
+    /*圧縮した履歴の区間を登録する*/
+    @Insert("""
+            <script>
+                INSERT INTO students_courses_status_history
+                    (students_courses_id, status, first_status_id, last_status_id, transitions, first_at, last_at)
+                VALUES
+                <foreach item="run" collection="runs" separator=",">
+                    (#{run.studentsCoursesId}, #{run.status}, #{run.firstStatusId}, #{run.lastStatusId},
+                     #{run.transitions}, #{run.firstAt}, #{run.lastAt})
+                </foreach>
+            </script>
+            """)
+    int insertCourseStatusRuns(@Param("runs") List<CourseStatusRun> runs);
+
+    /*圧縮した履歴の最後の区間に、同じ受講状況の続きをまとめる*/
+    @Update("""
+            UPDATE students_courses_status_history
+            SET last_status_id = #{lastStatusId}, transitions = #{transitions}, last_at = #{lastAt}
+            WHERE id = #{id}
+            """)
+    int extendCourseStatusRun(CourseStatusRun run);
+
+    /*圧縮した受講状況をIDで削除する*/
+    @Delete("""
+            <script>
+                DELETE FROM students_courses_status WHERE id IN
+                <foreach item="id" collection="statusIds" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int deleteCourseStatusesByIds(@Param("statusIds") List<Integer> statusIds);
 }
 /* @Paramアノテーションを使うことで、動的にパラメータを渡すことができる。一例として、
    #{}というプレーズホルダーを使用することでSQLクエリ内で直接文字列を埋め込まないようにすることができ、
@@ -457,4 +940,3 @@ public interface StudentRepository {
 /*@Insert("INSERT INTO students_courses(student_id, course_name, start_date, end_date)" +
             "VALUES(#{studentId}, #{courseName}, #{startDate}, #{endDate})")は、一括でエイリアスをつけている。*/
 /*chatGPTを使ってうまく動作しない場合は、リポジトリをその都度作成する必要あり？*/
-
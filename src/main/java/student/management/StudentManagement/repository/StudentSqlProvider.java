@@ -0,0 +1,63 @@
+package student.management.StudentManagement.repository;
+
+import org.apache.ibatis.annotations.Param;
+import student.management.StudentManagement.domain.StudentFields;
+
+/*指定された項目（StudentFields）の列のみをSELECTする受講生の検索のSQL（StudentRepositoryの@SelectProvider）。
+ * 検索条件はStudentRepositoryの対応する検索（findStudentsAfter・findStudentByGenderなど）と同じ。
+ * 列名はStudentFieldsの定義から作成し、検索条件の値は全てバインド変数で渡す。*/
+public class StudentSqlProvider {
+
+    private StudentSqlProvider() {
+    }
+
+    public static String findStudentColumns(@Param("fields") StudentFields fields) {
+        return "SELECT " + fields.selectList(null) + """
+
+                FROM students
+                WHERE isdeleted = false
+                ORDER BY id
+                """;
+    }
+
+    public static String findStudentColumnsAfter(@Param("fields") StudentFields fields) {
+        return "SELECT " + fields.selectList(null) + """
+
+                FROM students
+                WHERE isdeleted = false AND id > #{afterId}
+                ORDER BY id
+                LIMIT #{limit}
+                """;
+    }
+
+    public static String findStudentColumnsByIds(@Param("fields") StudentFields fields) {
+        return "<script>SELECT " + fields.selectList(null) + """
+
+                FROM students
+                WHERE isdeleted = false AND id IN
+                <foreach item="studentId" collection="studentIds" open="(" separator="," close=")">
+                    #{studentId}
+                </foreach>
+                ORDER BY id
+                </script>
+                """;
+    }
+
+    public static String findStudentColumnsByGender(@Param("fields") StudentFields fields) {
+        return "SELECT " + fields.selectList(null) + """
+
+                FROM students
+                WHERE LOWER(gender) = LOWER(#{gender}) AND isdeleted = 0
+                """;
+    }
+
+    public static String findStudentColumnsByCourseName(@Param("fields") StudentFields fields) {
+        return "SELECT " + fields.selectList("s") + """
+
+                FROM students s
+                JOIN students_courses sc ON s.id = sc.student_id
+                WHERE LOWER(sc.course_name) = LOWER(#{courseName})
+                AND s.isdeleted = 0
+                """;
+    }
+}
@@ -0,0 +1,26 @@
+package student.management.StudentManagement.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*トランザクションのコミット後に処理を実行するためのユーティリティ。
+ * キャッシュの破棄など、コミット前に行うと古いデータを読み直してしまう処理に使用する。
+ * トランザクション外で呼ばれた場合（自動コミット）はその場で実行する。*/
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package student.management.StudentManagement.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*テーブルごとの変更バージョン。書き込みのたびに該当テーブルのバージョンを上げ、
+ * 一覧・詳細のレスポンスのETagとして使用する（バージョンが変わらなければ内容も変わらない）。
+ * 更新時とコミット後の両方でバージョンを上げるため、コミット前の内容に付いたETagがコミット後に一致することはない。
+ * バージョンはこのプロセス内のものなので、起動ごとに異なるエポックをETagに含める。*/
+@Component
+public class ChangeVersions {
+
+    /*バージョンを管理するテーブル*/
+    public enum Table {
+        STUDENTS, STUDENTS_COURSES, STUDENTS_COURSES_STATUS
+    }
+
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final Map<Table, AtomicLong> versions = new EnumMap<>(Table.class);
+
+    public ChangeVersions() {
+        for (Table table : Table.values()) {
+            versions.put(table, new AtomicLong());
+        }
+    }
+
+    /*テーブルのバージョンを上げる。トランザクション内で呼ばれた場合はコミット後にも上げる。
+     * @param tables 書き込みを行ったテーブル*/
+    public void bump(Table... tables) {
+        increment(tables);
+        AfterCommit.run(() -> increment(tables));
+    }
+
+    private void increment(Table[] tables) {
+        for (Table table : tables) {
+            versions.get(table).incrementAndGet();
+        }
+    }
+
+    /*指定したテーブルの現在のバージョンから強いETagを作成する。
+     * @param tables レスポンスの内容が依存するテーブル
+     * @return ETag（引用符付き）*/
+    public String etag(Table... tables) {
+        StringBuilder etag = new StringBuilder("\"").append(epoch);
+        for (Table table : tables) {
+            etag.append('-').append(versions.get(table).get());
+        }
+        return etag.append('"').toString();
+    }
+}
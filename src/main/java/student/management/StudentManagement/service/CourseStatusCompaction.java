@@ -0,0 +1,241 @@
+package student.management.StudentManagement.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import student.management.StudentManagement.data.CourseStatusRow;
+import student.management.StudentManagement.data.CourseStatusRun;
+import student.management.StudentManagement.repository.StudentRepository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*受講状況の履歴（students_courses_status）の圧縮。
+ * 受講生コースごとに最新の受講状況とaudit-window内に登録された受講状況を残し、それより古い受講状況は
+ * 同じ受講状況が続いた区間ごとに１行にまとめてstudents_courses_status_historyに移す（ランレングス圧縮）。
+ * 最新の受講状況は常に残すため、最新の受講状況の射影・統計・受講生詳細は変わらない（ETagのバージョンも更新しない）。
+ * 受講生コースIDの範囲（chunk-size件）ごとに別のトランザクションで実行する。
+ * student.course-status.compaction.enabled=trueの場合、intervalごとに実行する。
+ * partitioning.enabled=trueの場合は、月ごとにパーティション分割した受講状況のテーブル
+ * （db/partitioning/students_courses_status_partitioning.sqlを参照）に、months-ahead先までのパーティションを追加する。
+ * course.status.compaction.rows（移した受講状況の行数）・course.status.compaction.runs（作成・延長した区間の数）・
+ * course.status.compaction.chunk（１チャンクの所要時間）を記録する。*/
+@Component
+@Slf4j
+public class CourseStatusCompaction {
+
+    /*パーティション名（pYYYYMM）*/
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final StudentRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final DataSource dataSource;
+
+    private final boolean enabled;
+    private final Duration auditWindow;
+    private final int chunkSize;
+    private final boolean partitioningEnabled;
+    private final int monthsAhead;
+
+    private final Counter compactedRows;
+    private final Counter writtenRuns;
+    private final Timer chunkTimer;
+
+    public CourseStatusCompaction(StudentRepository repository,
+                                  PlatformTransactionManager transactionManager,
+                                  DataSource dataSource,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${student.course-status.compaction.enabled:false}") boolean enabled,
+                                  @Value("${student.course-status.compaction.audit-window:P90D}") Duration auditWindow,
+                                  @Value("${student.course-status.compaction.chunk-size:1000}") int chunkSize,
+                                  @Value("${student.course-status.compaction.partitioning.enabled:false}") boolean partitioningEnabled,
+                                  @Value("${student.course-status.compaction.partitioning.months-ahead:3}") int monthsAhead) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("student.course-status.compaction.chunk-size must be positive");
+        }
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.auditWindow = auditWindow;
+        this.chunkSize = chunkSize;
+        this.partitioningEnabled = partitioningEnabled;
+        this.monthsAhead = monthsAhead;
+
+        this.compactedRows = Counter.builder("course.status.compaction.rows")
+                .description("Course status rows rolled into the compact history table")
+                .register(meterRegistry);
+        this.writtenRuns = Counter.builder("course.status.compaction.runs")
+                .description("Compact history runs inserted or extended")
+                .register(meterRegistry);
+        this.chunkTimer = Timer.builder("course.status.compaction.chunk")
+                .description("Time to compact the course status history of one range of student courses")
+                .register(meterRegistry);
+    }
+
+    /*定期実行のエントリポイント（student.course-status.compaction.enabled=falseの場合は何もしない）*/
+    @Scheduled(fixedDelayString = "${student.course-status.compaction.interval:PT6H}",
+            initialDelayString = "${student.course-status.compaction.initial-delay:PT10M}")
+    public void compactOnSchedule() {
+        if (!enabled) {
+            return;
+        }
+        if (partitioningEnabled) {
+            try {
+                addPartitions();
+            } catch (SQLException e) {
+                log.error("Failed to add partitions to students_courses_status", e);
+            }
+        }
+        compact();
+    }
+
+    /*全ての受講生コースについて、audit-windowより古い受講状況を圧縮した履歴に移す。
+     * 何度実行しても結果は同じ（最新の受講状況と監査期間内の受講状況は移さない）。
+     * @return 移した受講状況の行数*/
+    public int compact() {
+        LocalDateTime createdBefore = LocalDateTime.now().minus(auditWindow);
+        int maxId = repository.findMaxStudentsCourseId();
+        int total = 0;
+        for (int fromId = 0; fromId < maxId; fromId += chunkSize) {
+            int from = fromId;
+            int to = Math.min(fromId + chunkSize, maxId);
+            long start = System.nanoTime();
+            Integer rows = transactionTemplate.execute(status -> compactChunk(from, to, createdBefore));
+            chunkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            total += rows == null ? 0 : rows;
+        }
+        if (total > 0) {
+            log.info("Compacted {} course status rows created before {}", total, createdBefore);
+        }
+        return total;
+    }
+
+    private int compactChunk(int fromId, int toId, LocalDateTime createdBefore) {
+        List<CourseStatusRow> rows = repository.lockCompactableCourseStatuses(fromId, toId, createdBefore);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, List<CourseStatusRow>> rowsByCourse = rows.stream().collect(Collectors.groupingBy(
+                CourseStatusRow::getStudentsCoursesId, LinkedHashMap::new, Collectors.toList()));
+        Map<Integer, CourseStatusRun> lastRuns = repository.findLastCourseStatusRuns(new ArrayList<>(rowsByCourse.keySet()))
+                .stream()
+                .collect(Collectors.toMap(CourseStatusRun::getStudentsCoursesId, Function.identity()));
+
+        List<CourseStatusRun> newRuns = new ArrayList<>();
+        int extended = 0;
+        for (Map.Entry<Integer, List<CourseStatusRow>> entry : rowsByCourse.entrySet()) {
+            // 前回の圧縮の最後の区間と同じ受講状況が続いている場合は、その区間を延長する
+            CourseStatusRun lastRun = lastRuns.get(entry.getKey());
+            boolean extendsLastRun = lastRun != null && lastRun.getStatus().equals(entry.getValue().get(0).getStatus());
+            CourseStatusRun current = extendsLastRun ? lastRun : null;
+            for (CourseStatusRow row : entry.getValue()) {
+                if (current == null || !current.getStatus().equals(row.getStatus())) {
+                    current = startRun(row);
+                    newRuns.add(current);
+                } else {
+                    current.setLastStatusId(row.getId());
+                    current.setTransitions(current.getTransitions() + 1);
+                    current.setLastAt(row.getCreatedAt());
+                }
+            }
+            if (extendsLastRun) {
+                repository.extendCourseStatusRun(lastRun);
+                extended++;
+            }
+        }
+
+        for (int from = 0; from < newRuns.size(); from += chunkSize) {
+            repository.insertCourseStatusRuns(newRuns.subList(from, Math.min(from + chunkSize, newRuns.size())));
+        }
+        List<Integer> statusIds = rows.stream().map(CourseStatusRow::getId).toList();
+        for (int from = 0; from < statusIds.size(); from += chunkSize) {
+            repository.deleteCourseStatusesByIds(statusIds.subList(from, Math.min(from + chunkSize, statusIds.size())));
+        }
+
+        int runs = newRuns.size() + extended;
+        AfterCommit.run(() -> {
+            compactedRows.increment(rows.size());
+            writtenRuns.increment(runs);
+        });
+        return rows.size();
+    }
+
+    private static CourseStatusRun startRun(CourseStatusRow row) {
+        CourseStatusRun run = new CourseStatusRun();
+        run.setStudentsCoursesId(row.getStudentsCoursesId());
+        run.setStatus(row.getStatus());
+        run.setFirstStatusId(row.getId());
+        run.setLastStatusId(row.getId());
+        run.setTransitions(1);
+        run.setFirstAt(row.getCreatedAt());
+        run.setLastAt(row.getCreatedAt());
+        return run;
+    }
+
+    /*月ごとのパーティションを、今月からmonths-ahead先の月まで追加する。
+     * テーブルがパーティション分割されていない場合は何もしない*/
+    public void addPartitions() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            YearMonth highest = null;
+            boolean hasMaxPartition = false;
+            try (PreparedStatement statement = connection.prepareStatement("""
+                    SELECT PARTITION_NAME FROM information_schema.PARTITIONS
+                    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'students_courses_status'
+                      AND PARTITION_NAME IS NOT NULL
+                    """);
+                 ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String name = resultSet.getString(1);
+                    if ("pmax".equals(name)) {
+                        hasMaxPartition = true;
+                    } else {
+                        YearMonth month = YearMonth.parse(name, PARTITION_NAME);
+                        if (highest == null || month.isAfter(highest)) {
+                            highest = month;
+                        }
+                    }
+                }
+            }
+            if (highest == null || !hasMaxPartition) {
+                log.warn("students_courses_status is not partitioned by month; skipping partition maintenance");
+                return;
+            }
+
+            YearMonth target = YearMonth.now().plusMonths(monthsAhead);
+            try (Statement statement = connection.createStatement()) {
+                for (YearMonth month = highest.plusMonths(1); !month.isAfter(target); month = month.plusMonths(1)) {
+                    // 名前と境界はYearMonthから作成するため、SQLに外部の値は含まれない
+                    statement.execute("ALTER TABLE students_courses_status REORGANIZE PARTITION pmax INTO ("
+                            + "PARTITION " + month.format(PARTITION_NAME)
+                            + " VALUES LESS THAN (UNIX_TIMESTAMP('" + month.plusMonths(1).atDay(1) + " 00:00:00')), "
+                            + "PARTITION pmax VALUES LESS THAN MAXVALUE)");
+                    log.info("Added partition {} to students_courses_status", month.format(PARTITION_NAME));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package student.management.StudentManagement.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import student.management.StudentManagement.exception.CourseStatusQueueClosedException;
+import student.management.StudentManagement.exception.CourseStatusQueueFullException;
+import student.management.StudentManagement.repository.StudentRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*受講状況の更新を書き込み遅延（write-behind）で反映するキュー。
+ * student.course-status.write-behind.enabled=trueの場合、PUT /courses/statusの更新はキューに入れて即座に返し、
+ * 受講生コースIDごとに最後の更新だけを残して（後勝ち）、batch-size件たまるかflush-intervalが経過した時点で
+ * まとめて１トランザクション（BATCHエグゼキュータ）で反映する。
+ * キューの受講生コースIDがcapacity件に達した場合、新しい受講生コースIDの更新は空きができるまで
+ * offer-timeoutだけ待ち、それでも空かなければCourseStatusQueueFullExceptionとする（背圧）。
+ * 反映に失敗した更新は１件ずつ反映し直し、失敗したものはmax-attempts回まで再度キューに戻す。
+ * 終了時は新しい更新を受け付けず（CourseStatusQueueClosedException）、残っている更新を全て反映してから停止する。
+ * まとめて反映するため、同じ受講生コースの途中の受講状況は履歴に残らない。*/
+@Component
+@Slf4j
+public class CourseStatusWriteBehind {
+
+    /*students_courses_status.statusのENUMの値（反映時ではなく受付時に検証する）*/
+    static final Set<String> STATUSES = Set.of("仮申込", "本申込", "受講中", "受講終了");
+
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration offerTimeout;
+    private final int maxAttempts;
+
+    private final StudentRepository batchRepository;
+    private final TransactionTemplate flushTransaction;
+    private final EnrollmentStatistics enrollmentStatistics;
+    private final ChangeVersions changeVersions;
+    private final StudentDetailCache detailCache;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushRequested = lock.newCondition();
+    /*受講生コースIDごとの未反映の更新（最初に受け付けた順）*/
+    private final LinkedHashMap<Integer, Pending> pending = new LinkedHashMap<>();
+    private boolean closed;
+    private Thread flusher;
+
+    private final Counter submitted;
+    private final Counter coalesced;
+    private final Counter rejected;
+    private final Counter flushed;
+    private final Counter failed;
+    private final Timer flushTimer;
+
+    public CourseStatusWriteBehind(SqlSessionFactory sqlSessionFactory,
+                                   PlatformTransactionManager transactionManager,
+                                   EnrollmentStatistics enrollmentStatistics,
+                                   ChangeVersions changeVersions,
+                                   StudentDetailCache detailCache,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${student.course-status.write-behind.enabled:false}") boolean enabled,
+                                   @Value("${student.course-status.write-behind.capacity:10000}") int capacity,
+                                   @Value("${student.course-status.write-behind.batch-size:500}") int batchSize,
+                                   @Value("${student.course-status.write-behind.flush-interval:PT1S}") Duration flushInterval,
+                                   @Value("${student.course-status.write-behind.offer-timeout:PT2S}") Duration offerTimeout,
+                                   @Value("${student.course-status.write-behind.max-attempts:3}") int maxAttempts) {
+        if (capacity < 1 || batchSize < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException(
+                    "student.course-status.write-behind capacity, batch-size and max-attempts must be positive");
+        }
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+        this.maxAttempts = maxAttempts;
+        // BATCHエグゼキュータは通常のSqlSessionTemplateと同じトランザクションで混在できないため、専用のMapperを使用する
+        this.batchRepository = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH)
+                .getMapper(StudentRepository.class);
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enrollmentStatistics = enrollmentStatistics;
+        this.changeVersions = changeVersions;
+        this.detailCache = detailCache;
+
+        Gauge.builder("course.status.queue.pending", this, CourseStatusWriteBehind::pendingCount)
+                .description("Course status updates waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("course.status.queue.lag", this, CourseStatusWriteBehind::lagSeconds)
+                .description("Age of the oldest course status update waiting to be written")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.submitted = Counter.builder("course.status.queue.submitted")
+                .description("Course status updates accepted into the queue")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("course.status.queue.coalesced")
+                .description("Course status updates that replaced a pending update for the same course")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("course.status.queue.rejected")
+                .description("Course status updates rejected because the queue was full or shutting down")
+                .register(meterRegistry);
+        this.flushed = Counter.builder("course.status.queue.flushed")
+                .description("Course status updates written to the database")
+                .register(meterRegistry);
+        this.failed = Counter.builder("course.status.queue.failed")
+                .description("Course status updates dropped after repeated write failures")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("course.status.queue.flush")
+                .description("Time to write one batch of course status updates")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /*キューが満杯の場合に再送を待ってもらう秒数（次の反映までの時間）*/
+    public long retryAfterSeconds() {
+        return Math.max(1, (flushInterval.toMillis() + 999) / 1000);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = new Thread(this::runFlusher, "course-status-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Course status write-behind started (capacity {}, batch size {}, flush interval {})",
+                capacity, batchSize, flushInterval);
+    }
+
+    /*受講状況の更新をキューに入れる。同じ受講生コースIDの未反映の更新があれば置き換える。
+     * @param studentsCoursesId 受講生コースID
+     * @param status 受講状況
+     * @throws IllegalArgumentException 受講生コースIDがない、または受講状況が不正な場合
+     * @throws CourseStatusQueueFullException キューが上限に達したまま空かなかった場合
+     * @throws CourseStatusQueueClosedException 停止処理に入り、新しい更新を受け付けない場合*/
+    public void submit(Integer studentsCoursesId, String status) {
+        if (studentsCoursesId == null) {
+            throw new IllegalArgumentException("studentsCoursesId is required");
+        }
+        if (!STATUSES.contains(status)) {
+            throw new IllegalArgumentException("Invalid status: " + status);
+        }
+
+        if (!enabled) {
+            throw new IllegalStateException("Course status write-behind is disabled");
+        }
+
+        lock.lock();
+        try {
+            long remaining = offerTimeout.toNanos();
+            while (true) {
+                if (closed) {
+                    rejected.increment();
+                    throw new CourseStatusQueueClosedException("Course status write-behind queue is shutting down");
+                }
+                Pending existing = pending.get(studentsCoursesId);
+                if (existing != null) {
+                    // 最初に受け付けた時刻を残し、遅延は最も古い未反映の更新から測る
+                    pending.put(studentsCoursesId, new Pending(status, existing.enqueuedAt(), 0));
+                    coalesced.increment();
+                    return;
+                }
+                if (pending.size() < capacity) {
+                    break;
+                }
+                if (remaining <= 0) {
+                    rejected.increment();
+                    throw new CourseStatusQueueFullException("Course status queue is full (" + capacity + " pending)");
+                }
+                flushRequested.signal();
+                remaining = notFull.awaitNanos(remaining);
+            }
+
+            pending.put(studentsCoursesId, new Pending(status, System.nanoTime(), 0));
+            submitted.increment();
+            if (pending.size() >= batchSize) {
+                flushRequested.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            throw new CourseStatusQueueFullException("Interrupted while waiting for the course status queue");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            Map<Integer, Pending> batch;
+            lock.lock();
+            try {
+                if (!closed && pending.size() < batchSize) {
+                    flushRequested.await(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+                }
+                if (closed) {
+                    return; // 残りはclose()で反映する
+                }
+                batch = drain();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            if (!batch.isEmpty()) {
+                try {
+                    flush(batch);
+                } catch (RuntimeException e) {
+                    log.error("Course status write-behind flush failed", e);
+                }
+            }
+        }
+    }
+
+    /*キューの先頭からbatchSize件を取り出す（ロックを保持して呼び出す）*/
+    private Map<Integer, Pending> drain() {
+        Map<Integer, Pending> batch = new LinkedHashMap<>();
+        Iterator<Map.Entry<Integer, Pending>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            Map.Entry<Integer, Pending> entry = iterator.next();
+            batch.put(entry.getKey(), entry.getValue());
+            iterator.remove();
+        }
+        if (!batch.isEmpty()) {
+            notFull.signalAll();
+        }
+        return batch;
+    }
+
+    /*取り出した更新をまとめて反映する。失敗した場合は１件ずつ反映し直し、失敗したものはキューに戻す*/
+    private void flush(Map<Integer, Pending> batch) {
+        long start = System.nanoTime();
+        try {
+            flushTransaction.executeWithoutResult(status -> write(batch));
+            flushed.increment(batch.size());
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.forEach((studentsCoursesId, update) -> retryLater(studentsCoursesId, update, e));
+                return;
+            }
+            log.warn("Course status batch of {} failed, retrying one by one: {}", batch.size(), e.getMessage());
+            batch.forEach((studentsCoursesId, update) -> {
+                try {
+                    flushTransaction.executeWithoutResult(status -> write(Map.of(studentsCoursesId, update)));
+                    flushed.increment();
+                } catch (RuntimeException ex) {
+                    retryLater(studentsCoursesId, update, ex);
+                }
+            });
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /*受講状況の履歴と最新の受講状況の射影を更新し、統計・バージョン・受講生詳細キャッシュにも反映する*/
+    private void write(Map<Integer, Pending> batch) {
+        List<Integer> studentsCoursesIds = new ArrayList<>(batch.keySet());
+        List<Integer> studentIds = batchRepository.findStudentIdsByStudentsCoursesIds(studentsCoursesIds);
+        EnrollmentStatistics.Snapshot before = enrollmentStatistics.lockAndSnapshot(batchRepository, studentIds);
+
+        batch.forEach((studentsCoursesId, update) ->
+                batchRepository.updateStudentCourseStatus(studentsCoursesId, update.status()));
+        studentsCoursesIds.forEach(batchRepository::refreshLatestCourseStatus);
+        // 受講状況と最新の受講状況のバッチは次の問い合わせの前にこの順序で実行される
+
+        enrollmentStatistics.recordChange(before, enrollmentStatistics.snapshot(batchRepository, studentIds));
+        changeVersions.bump(ChangeVersions.Table.STUDENTS_COURSES_STATUS);
+        studentIds.forEach(detailCache::invalidate);
+    }
+
+    private void retryLater(Integer studentsCoursesId, Pending update, RuntimeException e) {
+        int attempts = update.attempts() + 1;
+        if (attempts >= maxAttempts) {
+            failed.increment();
+            log.error("Dropped course status update {} -> {} after {} attempts: {}",
+                    studentsCoursesId, update.status(), attempts, e.getMessage());
+            return;
+        }
+        lock.lock();
+        try {
+            // 待っている間に新しい更新を受け付けていれば、そちらを優先する
+            pending.putIfAbsent(studentsCoursesId, new Pending(update.status(), update.enqueuedAt(), attempts));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*新しい更新の受付を止め、キューに残っている更新を全て反映してから停止する*/
+    @PreDestroy
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            flushRequested.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            flusher.join();
+        }
+
+        int remaining = pendingCount();
+        while (true) {
+            Map<Integer, Pending> batch;
+            lock.lock();
+            try {
+                batch = drain();
+            } finally {
+                lock.unlock();
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+            flush(batch);
+        }
+        if (remaining > 0) {
+            log.info("Course status write-behind flushed {} pending updates on shutdown", remaining);
+        }
+    }
+
+    private int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double lagSeconds() {
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            long oldest = pending.values().iterator().next().enqueuedAt();
+            for (Pending update : pending.values()) {
+                oldest = Math.min(oldest, update.enqueuedAt());
+            }
+            return (System.nanoTime() - oldest) / 1e9;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*未反映の更新。enqueuedAtは最初に受け付けた時刻（System.nanoTime）、attemptsは反映に失敗した回数*/
+    private record Pending(String status, long enqueuedAt, int attempts) {
+    }
+}
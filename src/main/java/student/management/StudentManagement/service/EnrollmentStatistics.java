@@ -0,0 +1,169 @@
+package student.management.StudentManagement.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import student.management.StudentManagement.data.EnrollmentStatsDTO;
+import student.management.StudentManagement.data.StatCount;
+import student.management.StudentManagement.data.StudentStatsRow;
+import student.management.StudentManagement.repository.StudentRepository;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*コース名・受講状況・地域・性別ごとの件数を保持する統計。
+ * 起動時に一度だけデータベースで集計し、以降は受講生の登録・受講状況の更新・論理削除などのたびに
+ * 更新前後の受講生の寄与の差分をコミット後に反映する。取得時にテーブルを走査することはない。
+ * 更新前の寄与は行をロックして読むため、同じ受講生への更新が並行しても差分が二重に数えられることはない。
+ * versionを条件にする更新（楽観的ロック）でも行をロックして読む。受講状況の更新は受講生・受講生コースの
+ * versionを変えないため、versionの確認だけでは更新前の寄与の読み込み後にコミットされた受講状況の変更を検出できない。
+ * 起動時の集計の実行中にコミットされた更新は反映されない場合がある。*/
+@Component
+@Slf4j
+public class EnrollmentStatistics {
+
+    /*地域・性別などが未設定の受講生を数えるキー*/
+    static final String UNSET = "未設定";
+
+    private final StudentRepository repository;
+
+    private final LongAdder totalStudents = new LongAdder();
+    private final LongAdder totalCourses = new LongAdder();
+    private final Map<String, LongAdder> byCourse = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> byStatus = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> byRegion = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> byGender = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    public EnrollmentStatistics(StudentRepository repository) {
+        this.repository = repository;
+    }
+
+    /*データベースで集計して初期値を読み込む*/
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<StatCount> regions = repository.countStudentsByRegion();
+        List<StatCount> genders = repository.countStudentsByGender();
+        List<StatCount> courses = repository.countCoursesByName();
+        List<StatCount> statuses = repository.countCoursesByStatus();
+
+        totalStudents.reset();
+        totalCourses.reset();
+        reset(byRegion, regions);
+        reset(byGender, genders);
+        reset(byCourse, courses);
+        reset(byStatus, statuses);
+        regions.forEach(count -> totalStudents.add(count.getCount()));
+        courses.forEach(count -> totalCourses.add(count.getCount()));
+        loaded = true;
+        log.info("Enrollment statistics loaded: {} students, {} courses", totalStudents.sum(), totalCourses.sum());
+    }
+
+    private void reset(Map<String, LongAdder> counters, List<StatCount> counts) {
+        counters.clear();
+        counts.forEach(count -> counter(counters, count.getLabel()).add(count.getCount()));
+    }
+
+    /*更新前の受講生の寄与を、該当行をロックして取得する。更新処理のトランザクション内で、更新の前に呼び出す。
+     * @param studentIds 受講生IDのリスト*/
+    public Snapshot lockAndSnapshot(List<Integer> studentIds) {
+        return snapshot(repository, studentIds, true);
+    }
+
+    /*指定のMapper（BATCHエグゼキュータなど）で、更新前の受講生の寄与を該当行をロックして取得する*/
+    public Snapshot lockAndSnapshot(StudentRepository repository, List<Integer> studentIds) {
+        return snapshot(repository, studentIds, true);
+    }
+
+    /*更新後の受講生の寄与を取得する。更新処理のトランザクション内で、更新の後に呼び出す。
+     * @param studentIds 受講生IDのリスト*/
+    public Snapshot snapshot(List<Integer> studentIds) {
+        return snapshot(repository, studentIds, false);
+    }
+
+    /*指定のMapper（一括登録のBATCHエグゼキュータなど）で更新後の受講生の寄与を取得する*/
+    public Snapshot snapshot(StudentRepository repository, List<Integer> studentIds) {
+        return snapshot(repository, studentIds, false);
+    }
+
+    private Snapshot snapshot(StudentRepository repository, List<Integer> studentIds, boolean forUpdate) {
+        List<Integer> ids = studentIds.stream().filter(id -> id != null).toList();
+        if (ids.isEmpty()) {
+            return Snapshot.EMPTY;
+        }
+        return new Snapshot(repository.findStudentStatsRows(ids, forUpdate));
+    }
+
+    /*更新前後の寄与の差分を、コミット後に統計へ反映する（ロールバックされた場合は反映しない）。
+     * @param before 更新前の寄与（新規登録の場合はSnapshot.EMPTY）
+     * @param after 更新後の寄与*/
+    public void recordChange(Snapshot before, Snapshot after) {
+        AfterCommit.run(() -> {
+            if (!loaded) {
+                return; // 読み込み時の集計に含まれる
+            }
+            apply(before, -1);
+            apply(after, 1);
+        });
+    }
+
+    private void apply(Snapshot snapshot, int sign) {
+        Set<Integer> counted = new HashSet<>();
+        for (StudentStatsRow row : snapshot.rows) {
+            if (Boolean.TRUE.equals(row.getIsDeleted())) {
+                continue;
+            }
+            if (counted.add(row.getStudentId())) {
+                totalStudents.add(sign);
+                counter(byRegion, row.getRegion()).add(sign);
+                counter(byGender, row.getGender()).add(sign);
+            }
+            if (row.getCourseName() != null) {
+                totalCourses.add(sign);
+                counter(byCourse, row.getCourseName()).add(sign);
+                if (row.getStatus() != null) {
+                    counter(byStatus, row.getStatus()).add(sign);
+                }
+            }
+        }
+    }
+
+    private static LongAdder counter(Map<String, LongAdder> counters, String label) {
+        return counters.computeIfAbsent(label == null || label.isEmpty() ? UNSET : label, key -> new LongAdder());
+    }
+
+    /*現在の統計を取得する（件数が０のキーは含めない）*/
+    public EnrollmentStatsDTO get() {
+        return new EnrollmentStatsDTO(totalStudents.sum(), totalCourses.sum(),
+                toMap(byCourse), toMap(byStatus), toMap(byRegion), toMap(byGender));
+    }
+
+    private static Map<String, Long> toMap(Map<String, LongAdder> counters) {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((label, counter) -> {
+            long count = counter.sum();
+            if (count != 0) {
+                result.put(label, count);
+            }
+        });
+        return result;
+    }
+
+    /*ある時点の受講生の統計への寄与*/
+    public static final class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot(List.of());
+
+        private final List<StudentStatsRow> rows;
+
+        private Snapshot(List<StudentStatsRow> rows) {
+            this.rows = rows;
+        }
+    }
+}
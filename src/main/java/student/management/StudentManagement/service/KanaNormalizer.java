@@ -0,0 +1,37 @@
+package student.management.StudentManagement.service;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/*受講生名・フリガナの検索用の正規化。
+ * NFKCにより全角英数字を半角に、半角カタカナを全角にそろえた上で、カタカナをひらがなに変換し、
+ * 英字を小文字にして空白を除く。「ｼﾞｭｺｳｾｲ」「ジュコウセイ」「じゅこう せい」は同じ文字列になる。*/
+public final class KanaNormalizer {
+
+    /*ひらがなに対応する文字のあるカタカナの範囲（ァ〜ヶ）*/
+    private static final char KATAKANA_FIRST = 'ァ';
+    private static final char KATAKANA_LAST = 'ヶ';
+    private static final int KATAKANA_TO_HIRAGANA = 'ァ' - 'ぁ';
+
+    private KanaNormalizer() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder builder = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (c >= KATAKANA_FIRST && c <= KATAKANA_LAST) {
+                c = (char) (c - KATAKANA_TO_HIRAGANA);
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package student.management.StudentManagement.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import student.management.StudentManagement.repository.StudentRepository;
+
+/*既存の受講状況の履歴から、受講生コースごとの最新の受講状況（射影）を作成する移行処理。
+ * 受講生コースIDの範囲ごとに別トランザクションで実行するため、大量の履歴でもロックを長く保持しない。
+ * student.latest-status.backfill-on-startup=trueの場合、起動時に実行する。*/
+@Component
+@Slf4j
+public class LatestCourseStatusBackfill {
+
+    private final StudentRepository repository;
+    private final ChangeVersions changeVersions;
+    private final StudentDetailCache detailCache;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean backfillOnStartup;
+    private final int chunkSize;
+
+    public LatestCourseStatusBackfill(StudentRepository repository,
+                                      ChangeVersions changeVersions,
+                                      StudentDetailCache detailCache,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${student.latest-status.backfill-on-startup:false}") boolean backfillOnStartup,
+                                      @Value("${student.latest-status.backfill-chunk-size:1000}") int chunkSize) {
+        this.repository = repository;
+        this.changeVersions = changeVersions;
+        this.detailCache = detailCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.backfillOnStartup = backfillOnStartup;
+        this.chunkSize = chunkSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (backfillOnStartup) {
+            backfill();
+        }
+    }
+
+    /*全ての受講生コースについて最新の受講状況を作成・更新する。
+     * 何度実行しても結果は同じ（既に新しい受講状況が反映されている場合は巻き戻さない）。
+     * @return 作成・更新した行数*/
+    public int backfill() {
+        int maxId = repository.findMaxStudentsCourseId();
+        int total = 0;
+        for (int fromId = 0; fromId < maxId; fromId += chunkSize) {
+            int from = fromId;
+            int to = Math.min(fromId + chunkSize, maxId);
+            Integer rows = transactionTemplate.execute(status -> repository.backfillLatestCourseStatuses(from, to));
+            total += rows == null ? 0 : rows;
+        }
+        changeVersions.bump(ChangeVersions.Table.STUDENTS_COURSES_STATUS);
+        detailCache.invalidateAll();
+        log.info("Latest course status backfill finished: {} rows up to students_courses.id {}", total, maxId);
+        return total;
+    }
+}
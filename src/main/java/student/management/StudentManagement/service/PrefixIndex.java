@@ -0,0 +1,89 @@
+package student.management.StudentManagement.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/*前方一致検索のための索引。
+ * 文書（受講生ID）ごとに複数の語を登録し、KanaNormalizerで正規化した語と文書IDの組を
+ * 並び順を保つ集合（スキップリスト）で保持する。前方一致はその語の位置から順に読むだけで済むため、
+ * 件数によらず対数時間＋取得件数で答えられる。検索と更新は並行して行える。*/
+public class PrefixIndex {
+
+    private record Entry(String term, int id) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int compared = term.compareTo(other.term);
+            return compared != 0 ? compared : Integer.compare(id, other.id);
+        }
+    }
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+    /*文書ID → 登録した語（正規化済み）。削除・置き換えに使用する*/
+    private final Map<Integer, List<String>> terms = new ConcurrentHashMap<>();
+
+    /*文書の語を登録する。既に登録されている場合は置き換える。
+     * @param id 文書ID
+     * @param texts 語（nullや空文字は無視する）*/
+    public void put(int id, Collection<String> texts) {
+        List<String> normalized = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            String term = KanaNormalizer.normalize(text);
+            if (!term.isEmpty() && !normalized.contains(term)) {
+                normalized.add(term);
+            }
+        }
+
+        // 同じ文書の更新が並行した場合に混ざらないよう、文書ごとに直列化する
+        terms.compute(id, (key, previous) -> {
+            if (previous != null) {
+                previous.forEach(term -> entries.remove(new Entry(term, id)));
+            }
+            if (normalized.isEmpty()) {
+                return null;
+            }
+            normalized.forEach(term -> entries.add(new Entry(term, id)));
+            return normalized;
+        });
+    }
+
+    /*文書を削除する*/
+    public void remove(int id) {
+        terms.computeIfPresent(id, (key, previous) -> {
+            previous.forEach(term -> entries.remove(new Entry(term, id)));
+            return null;
+        });
+    }
+
+    /*いずれかの語が指定の文字列で始まる文書のIDを、語の辞書順に最大limit件返す。
+     * @param prefix 前方一致させる文字列（正規化して比較する）
+     * @param limit 最大件数
+     * @return 文書IDのリスト（重複なし）*/
+    public List<Integer> search(String prefix, int limit) {
+        String normalized = KanaNormalizer.normalize(prefix);
+        Set<Integer> result = new LinkedHashSet<>();
+        if (normalized.isEmpty() || limit <= 0) {
+            return new ArrayList<>(result);
+        }
+        for (Entry entry : entries.tailSet(new Entry(normalized, Integer.MIN_VALUE))) {
+            if (!entry.term().startsWith(normalized)) {
+                break;
+            }
+            result.add(entry.id());
+            if (result.size() >= limit) {
+                break;
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /*登録されている文書の件数*/
+    public int size() {
+        return terms.size();
+    }
+}
@@ -0,0 +1,152 @@
+package student.management.StudentManagement.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.exception.StudentApiException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/*受講生一覧APIのクライアント。
+ * HttpClientを使い回して接続を再利用し、接続・応答それぞれにタイムアウトを設定する。
+ * レスポンスは文字列にまとめず、Jacksonのストリーミングパーサーで入力ストリームから
+ * 受講生を１件ずつ読み出すため、件数が多くても全体をメモリに保持しない（forEachStudent・openStudents）。
+ * レスポンスは受講生の配列（１件の場合はオブジェクトのみでもよい）を想定する。*/
+@Component
+public class StudentApiClient {
+
+    private final HttpClient httpClient;
+    private final URI studentsUri;
+    private final Duration requestTimeout;
+    private final ObjectReader studentReader;
+
+    @Autowired
+    public StudentApiClient(ObjectMapper objectMapper,
+                            @Value("${student.api.base-url:http://localhost:8080}") String baseUrl,
+                            @Value("${student.api.students-path:/studentList}") String studentsPath,
+                            @Value("${student.api.connect-timeout:PT2S}") Duration connectTimeout,
+                            @Value("${student.api.request-timeout:PT30S}") Duration requestTimeout) {
+        this(HttpClient.newBuilder()
+                        .connectTimeout(connectTimeout)
+                        .followRedirects(HttpClient.Redirect.NORMAL)
+                        .build(),
+                objectMapper, URI.create(baseUrl).resolve(studentsPath), requestTimeout);
+    }
+
+    /*HttpClientと接続先を指定して作成する（スタブサーバーに向ける場合など）*/
+    public StudentApiClient(HttpClient httpClient, ObjectMapper objectMapper, URI studentsUri, Duration requestTimeout) {
+        this.httpClient = httpClient;
+        this.studentsUri = studentsUri;
+        this.requestTimeout = requestTimeout;
+        this.studentReader = objectMapper.readerFor(Student.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    /*受講生の一覧を取得する。
+     * @return 受講生一覧*/
+    public List<Student> fetchStudents() {
+        List<Student> students = new ArrayList<>();
+        forEachStudent(students::add);
+        return students;
+    }
+
+    /*受講生の一覧を非同期に取得する。レスポンスの読み出しはHttpClientのスレッドで行う。
+     * @return 受講生一覧（失敗した場合はStudentApiExceptionで完了する）*/
+    public CompletableFuture<List<Student>> fetchStudentsAsync() {
+        return httpClient.sendAsync(newRequest(), HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(response -> {
+                    List<Student> students = new ArrayList<>();
+                    try (MappingIterator<Student> iterator = readStudents(response)) {
+                        iterator.forEachRemaining(students::add);
+                    } catch (StudentApiException e) {
+                        throw e;
+                    } catch (IOException | RuntimeException e) {
+                        throw new StudentApiException("Failed to read students from " + studentsUri, e);
+                    }
+                    return students;
+                });
+    }
+
+    /*受講生を１件ずつ読み出し、consumerに渡す。受講生の一覧をメモリに保持しない。
+     * @param consumer 受講生ごとに呼び出す処理*/
+    public void forEachStudent(Consumer<Student> consumer) {
+        try (MappingIterator<Student> iterator = openStudents()) {
+            iterator.forEachRemaining(consumer);
+        } catch (StudentApiException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            // MappingIteratorは読み出し中の入出力・解析エラーを実行時例外で通知する
+            throw new StudentApiException("Failed to read students from " + studentsUri, e);
+        }
+    }
+
+    /*受講生を１件ずつ読み出すイテレータを返す。
+     * 読み出し中は接続を保持するため、呼び出し側でtry-with-resourcesにより必ず閉じること。
+     * @return 受講生のイテレータ*/
+    public MappingIterator<Student> openStudents() {
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(newRequest(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            throw new StudentApiException("Failed to call " + studentsUri, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StudentApiException("Interrupted while calling " + studentsUri, e);
+        }
+        try {
+            return readStudents(response);
+        } catch (IOException e) {
+            throw new StudentApiException("Failed to read students from " + studentsUri, e);
+        }
+    }
+
+    private HttpRequest newRequest() {
+        return HttpRequest.newBuilder(studentsUri)
+                .timeout(requestTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+    }
+
+    /*レスポンスの本文を読み出すイテレータを作成する。配列の場合は要素ごと、オブジェクトの場合は１件として読む*/
+    private MappingIterator<Student> readStudents(HttpResponse<InputStream> response) throws IOException {
+        InputStream body = response.body();
+        if (response.statusCode() / 100 != 2) {
+            body.close();
+            throw new StudentApiException("Unexpected status " + response.statusCode() + " from " + studentsUri);
+        }
+
+        JsonParser parser = studentReader.createParser(body);
+        JsonToken first = parser.nextToken();
+        if (first == null) {
+            parser.close();
+            return MappingIterator.emptyIterator();
+        }
+        if (first != JsonToken.START_ARRAY && first != JsonToken.START_OBJECT) {
+            parser.close();
+            throw new StudentApiException("Unexpected JSON token " + first + " from " + studentsUri);
+        }
+        if (first == JsonToken.START_ARRAY) {
+            // 配列の開始を読み飛ばし、要素を順に読み出す（終端の]で読み出しを終える）
+            parser.clearCurrentToken();
+        }
+        return studentReader.readValues(parser);
+    }
+}
@@ -0,0 +1,249 @@
+package student.management.StudentManagement.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import student.management.StudentManagement.data.ArchivalStatsDTO;
+import student.management.StudentManagement.exception.StudentNotFoundException;
+import student.management.StudentManagement.repository.StudentRepository;
+import student.management.StudentManagement.service.ChangeVersions.Table;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*論理削除した受講生のアーカイブ。
+ * 論理削除からretentionが経過した受講生を、コース情報・受講状況の履歴ごとアーカイブテーブル（students_archiveなど）に移動し、
+ * 一覧・検索で走査するテーブルから取り除く。student.archival.enabled=trueの場合、intervalごとに実行する。
+ * ロックの保持時間とレプリケーションの遅延を抑えるため、chunk-size件ずつ別のトランザクションで移動し、
+ * トランザクションの間にpauseだけ待つ。途中で失敗した場合はそのチャンクをロールバックし、次回の実行で再度移動する。
+ * アーカイブした受講生はrestoreで元のIDのまま削除されていない受講生として戻せる。
+ * student.archival.students／courses／statuses（移動した件数）・student.archival.restored・
+ * student.archival.chunk（１チャンクの所要時間）を記録する。*/
+@Service
+@Slf4j
+public class StudentArchiveService {
+
+    private final StudentRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final EnrollmentStatistics enrollmentStatistics;
+    private final ChangeVersions changeVersions;
+    private final StudentDetailCache detailCache;
+    private final StudentSearchIndex searchIndex;
+
+    private final boolean enabled;
+    private final Duration retention;
+    private final int chunkSize;
+    private final Duration pause;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong failedChunks = new AtomicLong();
+    private final AtomicLong archiveNanos = new AtomicLong();
+    private final Counter archivedStudents;
+    private final Counter archivedCourses;
+    private final Counter archivedStatuses;
+    private final Counter restoredStudents;
+    private final Timer chunkTimer;
+
+    private volatile LocalDateTime lastRunStartedAt;
+    private volatile Duration lastRunDuration;
+    private volatile long lastRunStudents;
+    private volatile String lastError;
+
+    public StudentArchiveService(StudentRepository repository,
+                                 PlatformTransactionManager transactionManager,
+                                 EnrollmentStatistics enrollmentStatistics,
+                                 ChangeVersions changeVersions,
+                                 StudentDetailCache detailCache,
+                                 StudentSearchIndex searchIndex,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${student.archival.enabled:false}") boolean enabled,
+                                 @Value("${student.archival.retention:P30D}") Duration retention,
+                                 @Value("${student.archival.chunk-size:100}") int chunkSize,
+                                 @Value("${student.archival.pause:PT0.1S}") Duration pause) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("student.archival.chunk-size must be positive");
+        }
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enrollmentStatistics = enrollmentStatistics;
+        this.changeVersions = changeVersions;
+        this.detailCache = detailCache;
+        this.searchIndex = searchIndex;
+        this.enabled = enabled;
+        this.retention = retention;
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+
+        this.archivedStudents = Counter.builder("student.archival.students")
+                .description("Soft-deleted students moved to the archive tables")
+                .register(meterRegistry);
+        this.archivedCourses = Counter.builder("student.archival.courses")
+                .description("Student courses moved to the archive tables")
+                .register(meterRegistry);
+        this.archivedStatuses = Counter.builder("student.archival.statuses")
+                .description("Course status history rows moved to the archive tables")
+                .register(meterRegistry);
+        this.restoredStudents = Counter.builder("student.archival.restored")
+                .description("Archived students restored to the live tables")
+                .register(meterRegistry);
+        this.chunkTimer = Timer.builder("student.archival.chunk")
+                .description("Time to archive one chunk of soft-deleted students")
+                .register(meterRegistry);
+    }
+
+    /*定期実行のエントリポイント（student.archival.enabled=falseの場合は何もしない）*/
+    @Scheduled(fixedDelayString = "${student.archival.interval:PT1H}",
+            initialDelayString = "${student.archival.initial-delay:PT5M}")
+    public void archiveOnSchedule() {
+        if (enabled) {
+            archiveExpired();
+        }
+    }
+
+    /*論理削除からretentionが経過した受講生を全てアーカイブする。
+     * @return アーカイブした受講生の件数*/
+    public long archiveExpired() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime deletedBefore = startedAt.minus(retention);
+        long start = System.nanoTime();
+        long students = 0;
+        runs.incrementAndGet();
+        lastRunStartedAt = startedAt;
+
+        try {
+            while (true) {
+                List<Integer> studentIds = repository.findArchivableStudentIds(deletedBefore, chunkSize);
+                if (studentIds.isEmpty()) {
+                    break;
+                }
+                students += archiveChunk(studentIds, deletedBefore);
+                if (studentIds.size() < chunkSize) {
+                    break;
+                }
+                if (!pause.isZero()) {
+                    Thread.sleep(pause.toMillis());
+                }
+            }
+            lastError = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            failedChunks.incrementAndGet();
+            lastError = e.getMessage();
+            log.error("Student archival stopped after {} students; the rest will be retried on the next run",
+                    students, e);
+        } finally {
+            lastRunDuration = Duration.ofNanos(System.nanoTime() - start);
+            lastRunStudents = students;
+        }
+
+        if (students > 0) {
+            log.info("Archived {} students deleted before {} in {}", students, deletedBefore, lastRunDuration);
+        }
+        return students;
+    }
+
+    /*１チャンク分の受講生を１トランザクションでアーカイブテーブルに移動する。
+     * 行ロックを取得した時点でまだ対象である受講生のみを移動する。
+     * 論理削除された受講生は統計に含まれないため、統計は変わらない*/
+    private int archiveChunk(List<Integer> studentIds, LocalDateTime deletedBefore) {
+        long start = System.nanoTime();
+        int[] moved = transactionTemplate.execute(status -> {
+            List<Integer> locked = repository.lockArchivableStudents(studentIds, deletedBefore);
+            if (locked.isEmpty()) {
+                return new int[3];
+            }
+            int statuses = repository.archiveStudentsCourseStatuses(locked);
+            int courses = repository.archiveStudentsCourses(locked);
+            int students = repository.archiveStudents(locked);
+
+            repository.deleteLatestCourseStatusesByStudentIds(locked);
+            repository.deleteStudentsCourseStatusesByStudentIds(locked);
+            repository.deleteStudentsCoursesByStudentIds(locked);
+            repository.deleteStudentsByIds(locked);
+
+            changeVersions.bump(Table.STUDENTS, Table.STUDENTS_COURSES, Table.STUDENTS_COURSES_STATUS);
+            locked.forEach(detailCache::invalidate);
+            searchIndex.refresh(locked);
+            return new int[]{students, courses, statuses};
+        });
+        long elapsed = System.nanoTime() - start;
+
+        chunks.incrementAndGet();
+        archiveNanos.addAndGet(elapsed);
+        chunkTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        archivedStudents.increment(moved[0]);
+        archivedCourses.increment(moved[1]);
+        archivedStatuses.increment(moved[2]);
+        return moved[0];
+    }
+
+    /*アーカイブした受講生を、コース情報・受講状況の履歴ごと元のIDで削除されていない受講生として戻す。
+     * @param studentId 受講生ID
+     * @throws StudentNotFoundException アーカイブに受講生がない場合
+     * @throws IllegalArgumentException 同じID・メールアドレスの受講生が既に存在する場合*/
+    public void restore(Integer studentId) {
+        List<Integer> studentIds = List.of(studentId);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                EnrollmentStatistics.Snapshot before = enrollmentStatistics.lockAndSnapshot(studentIds);
+                if (repository.restoreStudent(studentId) == 0) {
+                    throw new StudentNotFoundException("Archived student not found with ID: " + studentId);
+                }
+                repository.restoreStudentsCourses(studentId);
+                repository.restoreStudentsCourseStatuses(studentId);
+                repository.findArchivedStudentsCourseIds(studentId).forEach(repository::refreshLatestCourseStatus);
+
+                repository.deleteArchivedStudentsCourseStatuses(studentId);
+                repository.deleteArchivedStudentsCourses(studentId);
+                repository.deleteArchivedStudent(studentId);
+
+                enrollmentStatistics.recordChange(before, enrollmentStatistics.snapshot(studentIds));
+                changeVersions.bump(Table.STUDENTS, Table.STUDENTS_COURSES, Table.STUDENTS_COURSES_STATUS);
+                detailCache.invalidate(studentId);
+                searchIndex.refresh(studentIds);
+            });
+        } catch (DuplicateKeyException e) {
+            throw new IllegalArgumentException(
+                    "Student " + studentId + " cannot be restored because its ID or email is already in use", e);
+        }
+        restoredStudents.increment();
+        log.info("Restored archived student {}", studentId);
+    }
+
+    /*アーカイブの実行状況を取得する（対象の件数はデータベースから数える）*/
+    public ArchivalStatsDTO getStats() {
+        long nanos = archiveNanos.get();
+        long students = (long) archivedStudents.count();
+        return new ArchivalStatsDTO(
+                enabled,
+                retention,
+                chunkSize,
+                repository.countArchivableStudents(LocalDateTime.now().minus(retention)),
+                runs.get(),
+                chunks.get(),
+                failedChunks.get(),
+                students,
+                (long) archivedCourses.count(),
+                (long) archivedStatuses.count(),
+                (long) restoredStudents.count(),
+                nanos == 0 ? 0 : students / (nanos / 1e9),
+                lastRunStartedAt,
+                lastRunDuration,
+                lastRunStudents,
+                lastError);
+    }
+}
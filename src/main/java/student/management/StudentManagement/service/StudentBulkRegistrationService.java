@@ -0,0 +1,183 @@
+package student.management.StudentManagement.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.data.StudentRegistrationResult;
+import student.management.StudentManagement.data.StudentsCourse;
+import student.management.StudentManagement.domain.StudentDetail;
+import student.management.StudentManagement.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*受講生の一括登録を行うサービス。
+ * 受講生・受講生コース情報・受講状況の登録をBATCHエグゼキュータでJDBCバッチにまとめて実行する。
+ * （MySQLではURLのrewriteBatchedStatements=trueにより、バッチが複数行のINSERT文に書き換えられる）
+ * 指定件数（チャンク）ごとに別トランザクションとし、１件ごとの登録結果を返す。*/
+@Service
+@Slf4j
+public class StudentBulkRegistrationService {
+
+    private final StudentService studentService;
+    private final StudentSearchIndex searchIndex;
+    private final EnrollmentStatistics enrollmentStatistics;
+    private final ChangeVersions changeVersions;
+    private final StudentRepository batchRepository;
+    private final SqlSessionTemplate batchSqlSession;
+    private final TransactionTemplate chunkTransaction;
+    private final Validator validator;
+    private final int chunkSize;
+
+    public StudentBulkRegistrationService(StudentService studentService,
+                                          StudentSearchIndex searchIndex,
+                                          EnrollmentStatistics enrollmentStatistics,
+                                          ChangeVersions changeVersions,
+                                          SqlSessionFactory sqlSessionFactory,
+                                          PlatformTransactionManager transactionManager,
+                                          Validator validator,
+                                          @Value("${student.bulk-registration.chunk-size:500}") int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("student.bulk-registration.chunk-size must be positive");
+        }
+        this.studentService = studentService;
+        this.searchIndex = searchIndex;
+        this.enrollmentStatistics = enrollmentStatistics;
+        this.changeVersions = changeVersions;
+        /*BATCHエグゼキュータは通常のSqlSessionTemplateと同じトランザクションで混在できないため、
+         * 一括登録専用のテンプレートとMapperを使用する*/
+        this.batchSqlSession = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+        this.batchRepository = batchSqlSession.getMapper(StudentRepository.class);
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    /*受講生詳細のリストを一括登録する。
+     * 入力チェックに失敗したものは登録せず、残りをチャンクごとに登録する。
+     * チャンクの登録に失敗した場合は、そのチャンクを１件ずつ登録し直して失敗した受講生を特定する。
+     * @param studentDetails 受講生詳細のリスト
+     * @return リストと同じ順序の登録結果*/
+    public List<StudentRegistrationResult> registerStudents(List<StudentDetail> studentDetails) {
+        StudentRegistrationResult[] results = new StudentRegistrationResult[studentDetails.size()];
+
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < studentDetails.size(); i++) {
+            String error = validate(studentDetails.get(i));
+            if (error != null) {
+                results[i] = StudentRegistrationResult.failed(i, error);
+            } else {
+                validIndexes.add(i);
+            }
+        }
+
+        for (int from = 0; from < validIndexes.size(); from += chunkSize) {
+            List<Integer> chunk = validIndexes.subList(from, Math.min(from + chunkSize, validIndexes.size()));
+            try {
+                registerChunk(studentDetails, chunk);
+                chunk.forEach(i -> results[i] = StudentRegistrationResult.succeeded(
+                        i, studentDetails.get(i).getStudent().getId()));
+            } catch (RuntimeException e) {
+                log.warn("Bulk registration chunk failed, retrying one by one: {}", e.getMessage());
+                chunk.forEach(i -> results[i] = registerOne(studentDetails, i));
+            }
+        }
+
+        log.info("Bulk registration finished: {} requested, {} registered", studentDetails.size(),
+                Arrays.stream(results).filter(StudentRegistrationResult::isSuccess).count());
+        return Arrays.asList(results);
+    }
+
+    private StudentRegistrationResult registerOne(List<StudentDetail> studentDetails, int index) {
+        try {
+            registerChunk(studentDetails, List.of(index));
+            return StudentRegistrationResult.succeeded(index, studentDetails.get(index).getStudent().getId());
+        } catch (RuntimeException e) {
+            log.warn("Bulk registration failed for item {}: {}", index, e.getMessage());
+            return StudentRegistrationResult.failed(index, "登録に失敗しました: " + e.getMessage());
+        }
+    }
+
+    /*１チャンク分の受講生を１トランザクションで登録する。
+     * 受講生→受講生コース情報→受講状況の順にバッチを実行し、採番されたIDを次の登録に引き継ぐ。*/
+    private void registerChunk(List<StudentDetail> studentDetails, List<Integer> indexes) {
+        List<Student> students = indexes.stream()
+                .map(i -> studentDetails.get(i).getStudent())
+                .collect(Collectors.toList());
+
+        try {
+            chunkTransaction.executeWithoutResult(status -> {
+                students.forEach(batchRepository::registerStudent);
+                batchSqlSession.flushStatements(); // バッチを実行して受講生IDを確定させる
+                List<Integer> studentIds = students.stream().map(Student::getId).toList();
+                searchIndex.refresh(studentIds); // コミット後に反映される
+
+                List<StudentsCourse> courses = new ArrayList<>();
+                for (Integer i : indexes) {
+                    StudentDetail studentDetail = studentDetails.get(i);
+                    if (studentDetail.getStudentCourseList() == null) {
+                        continue;
+                    }
+                    for (StudentsCourse course : studentDetail.getStudentCourseList()) {
+                        studentService.initStudentsCourses(course, studentDetail.getStudent().getId());
+                        courses.add(course);
+                    }
+                }
+                if (!courses.isEmpty()) {
+                    courses.forEach(batchRepository::registerStudentCourse);
+                    batchSqlSession.flushStatements(); // バッチを実行して受講生コースIDを確定させる
+
+                    List<StudentsCourse> coursesWithStatus = courses.stream()
+                            .filter(course -> course.getStatus() != null)
+                            .collect(Collectors.toList());
+                    coursesWithStatus.forEach(course ->
+                            batchRepository.registerCourseStatus(course.getId(), course.getStatus()));
+                    coursesWithStatus.forEach(course ->
+                            batchRepository.refreshLatestCourseStatus(course.getId()));
+                    // 受講状況と最新の受講状況のバッチは次の問い合わせの前にこの順序で実行される
+                }
+
+                enrollmentStatistics.recordChange(EnrollmentStatistics.Snapshot.EMPTY,
+                        enrollmentStatistics.snapshot(batchRepository, studentIds));
+                changeVersions.bump(ChangeVersions.Table.STUDENTS, ChangeVersions.Table.STUDENTS_COURSES,
+                        ChangeVersions.Table.STUDENTS_COURSES_STATUS);
+            });
+        } catch (RuntimeException e) {
+            // ロールバックされたため、採番されたIDは無効
+            students.forEach(student -> student.setId(null));
+            indexes.stream()
+                    .map(i -> studentDetails.get(i).getStudentCourseList())
+                    .filter(courses -> courses != null)
+                    .forEach(courses -> courses.forEach(course -> course.setId(null)));
+            throw e;
+        }
+    }
+
+    /*入力チェックを行い、エラーがある場合はメッセージを返す*/
+    private String validate(StudentDetail studentDetail) {
+        if (studentDetail == null || studentDetail.getStudent() == null) {
+            return "StudentDetail or Student cannot be null.";
+        }
+        Set<ConstraintViolation<StudentDetail>> violations = validator.validate(studentDetail);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+}
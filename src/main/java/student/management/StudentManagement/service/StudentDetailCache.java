@@ -0,0 +1,240 @@
+package student.management.StudentManagement.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.domain.StudentDetail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/*受講生IDごとに組み立て済みの受講生詳細と、そのシリアライズ済みJSONを保持するキャッシュ。
+ * 件数の上限と有効期限を持ち、受講生の更新・受講状況の更新・論理削除の際に該当IDを破棄する。
+ * JSONは一覧のレスポンスで受講生ごとの断片として連結でき、gzip圧縮したものも必要に応じて保持する。*/
+@Component
+public class StudentDetailCache {
+
+    private final Cache<Integer, StudentDetail> cache;
+    /*受講生詳細（searchStudentById）のJSON*/
+    private final Cache<Integer, JsonFragment> jsonCache;
+    /*受講生一覧の要素（StudentDetailLoaderで組み立てたもの）のJSON。受講状況の項目が詳細と異なるため別に保持する*/
+    private final Cache<Integer, JsonFragment> listJsonCache;
+    private final ObjectWriter writer;
+
+    /*破棄が行われた回数。読み込み中に破棄が挟まった場合、読み込んだ値は古い可能性があるため保持しない*/
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public StudentDetailCache(ObjectMapper objectMapper,
+                              @Value("${student.cache.maximum-size:10000}") long maximumSize,
+                              @Value("${student.cache.json-maximum-size:100000}") long jsonMaximumSize,
+                              @Value("${student.cache.expire-after-write:PT5M}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.jsonCache = Caffeine.newBuilder()
+                .maximumSize(jsonMaximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.listJsonCache = Caffeine.newBuilder()
+                .maximumSize(jsonMaximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.writer = objectMapper.writerFor(StudentDetail.class);
+    }
+
+    /*キャッシュから受講生詳細を取得する。存在しない場合はloaderで読み込んでキャッシュする。
+     * @param studentId 受講生ID
+     * @param loader 受講生詳細をデータベースから読み込む処理（見つからない場合はnullを返す）
+     * @return 受講生詳細（見つからない場合はnull）*/
+    public StudentDetail get(Integer studentId, Function<Integer, StudentDetail> loader) {
+        StudentDetail cached = cache.getIfPresent(studentId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = invalidations.get();
+        StudentDetail loaded = loader.apply(studentId);
+        if (loaded != null) {
+            putIfNotInvalidated(cache, studentId, loaded, stamp);
+        }
+        return loaded;
+    }
+
+    /*受講生詳細のJSONを取得する。存在しない場合は受講生詳細を取得（get）してシリアライズし、キャッシュする。
+     * @param studentId 受講生ID
+     * @param loader 受講生詳細をデータベースから読み込む処理（見つからない場合はnullを返す）
+     * @param gzip gzip圧縮したJSONを返す場合はtrue
+     * @return JSON（見つからない場合はnull）*/
+    public byte[] getJson(Integer studentId, Function<Integer, StudentDetail> loader, boolean gzip) {
+        JsonFragment fragment = jsonCache.getIfPresent(studentId);
+        if (fragment == null) {
+            long stamp = invalidations.get();
+            StudentDetail studentDetail = get(studentId, loader);
+            if (studentDetail == null) {
+                return null;
+            }
+            fragment = new JsonFragment(serialize(studentDetail));
+            putIfNotInvalidated(jsonCache, studentId, fragment, stamp);
+        }
+        return gzip ? fragment.gzipped() : fragment.json;
+    }
+
+    /*破棄の回数（getJsonArrayに渡す）。受講生一覧を読み込む前に取得する*/
+    public long invalidationStamp() {
+        return invalidations.get();
+    }
+
+    /*受講生一覧に対応する受講生詳細のJSONの配列を作成する。
+     * キャッシュにある受講生はその断片を連結し、ない受講生のみbulkLoaderでまとめて組み立ててシリアライズする。
+     * studentsはbulkLoaderで読み直さずにそのままシリアライズするため、studentsを読み込む前に取得した
+     * invalidationStampを渡す。読み込み後に破棄された受講生のJSONはキャッシュに保存しない。
+     * @param students 受講生一覧
+     * @param bulkLoader 受講生一覧から受講生詳細の一覧を組み立てる処理（同じ順序で返す）
+     * @param stamp studentsを読み込む前に取得したinvalidationStamp
+     * @return 受講生詳細のJSON配列*/
+    public byte[] getJsonArray(List<Student> students, Function<List<Student>, List<StudentDetail>> bulkLoader,
+                               long stamp) {
+        Map<Integer, JsonFragment> cached = listJsonCache.getAllPresent(students.stream().map(Student::getId).toList());
+
+        List<Student> misses = new ArrayList<>();
+        for (Student student : students) {
+            if (!cached.containsKey(student.getId())) {
+                misses.add(student);
+            }
+        }
+        Map<Integer, JsonFragment> loaded = new HashMap<>();
+        if (!misses.isEmpty()) {
+            for (StudentDetail studentDetail : bulkLoader.apply(misses)) {
+                JsonFragment fragment = new JsonFragment(serialize(studentDetail));
+                loaded.put(studentDetail.getStudent().getId(), fragment);
+                putIfNotInvalidated(listJsonCache, studentDetail.getStudent().getId(), fragment, stamp);
+            }
+        }
+
+        int size = 2 + students.size();
+        List<byte[]> fragments = new ArrayList<>(students.size());
+        for (Student student : students) {
+            JsonFragment fragment = cached.getOrDefault(student.getId(), loaded.get(student.getId()));
+            fragments.add(fragment.json);
+            size += fragment.json.length;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        out.write('[');
+        for (int i = 0; i < fragments.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(fragments.get(i));
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    private <V> void putIfNotInvalidated(Cache<Integer, V> target, Integer studentId, V value, long stamp) {
+        target.put(studentId, value);
+        // 読み込み中に更新が入っていた場合、読み込んだ値は更新前のものかもしれないので捨てる
+        if (invalidations.get() != stamp) {
+            target.invalidate(studentId);
+        }
+    }
+
+    private byte[] serialize(StudentDetail studentDetail) {
+        try {
+            return writer.writeValueAsBytes(studentDetail);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize student " + studentDetail.getStudent().getId(), e);
+        }
+    }
+
+    /*受講生詳細を破棄する。
+     * 更新中のトランザクションがある場合はコミット後にも再度破棄し、コミット前に読み直された古い値を残さない。
+     * @param studentId 受講生ID*/
+    public void invalidate(Integer studentId) {
+        if (studentId == null) {
+            return;
+        }
+        evict(studentId);
+        AfterCommit.run(() -> evict(studentId));
+    }
+
+    /*全ての受講生詳細を破棄する（受講状況の移行処理など、多数の受講生に影響する更新の後に使用する）*/
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+        jsonCache.invalidateAll();
+        listJsonCache.invalidateAll();
+    }
+
+    private void evict(Integer studentId) {
+        invalidations.incrementAndGet();
+        cache.invalidate(studentId);
+        jsonCache.invalidate(studentId);
+        listJsonCache.invalidate(studentId);
+    }
+
+    /*ヒット数・ミス数・追い出し数などの統計情報を取得する*/
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+
+        CacheStats jsonStats = jsonCache.stats();
+        result.put("jsonSize", jsonCache.estimatedSize());
+        result.put("listJsonSize", listJsonCache.estimatedSize());
+        result.put("jsonHitCount", jsonStats.hitCount());
+        result.put("jsonMissCount", jsonStats.missCount());
+        result.put("jsonHitRate", jsonStats.hitRate());
+        result.put("listJsonHitRate", listJsonCache.stats().hitRate());
+        return result;
+    }
+
+    /*受講生１人分のJSON。gzip圧縮したものは最初に要求されたときに作成する*/
+    private static final class JsonFragment {
+        private final byte[] json;
+        private volatile byte[] gzipped;
+
+        private JsonFragment(byte[] json) {
+            this.json = json;
+        }
+
+        private byte[] gzipped() {
+            byte[] result = gzipped;
+            if (result == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 2 + 32);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                    gzip.write(json);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                result = out.toByteArray();
+                gzipped = result;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package student.management.StudentManagement.service;
+
+import org.springframework.stereotype.Component;
+import student.management.StudentManagement.data.CourseStatusDTO;
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.data.StudentsCourse;
+import student.management.StudentManagement.domain.StudentDetail;
+import student.management.StudentManagement.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*受講生一覧から受講生詳細の一覧を組み立てるローダー。
+ * 受講生ごとにコース情報と受講状況を問い合わせる（N+1）のではなく、
+ * 受講生IDをまとめてIN句で一括取得し、メモリ上で受講生詳細に紐づける。*/
+@Component
+public class StudentDetailLoader {
+
+    /*IN句に渡す受講生IDの上限。SQLが肥大化しないよう、この件数ごとに分割して問い合わせる*/
+    static final int CHUNK_SIZE = 1000;
+
+    private final StudentRepository repository;
+
+    public StudentDetailLoader(StudentRepository repository) {
+        this.repository = repository;
+    }
+
+    /*受講生の一覧に最新のコース情報と最新の受講状況を紐づける。
+     * 問い合わせ回数は受講生の件数ではなくチャンク数（件数 / CHUNK_SIZE）にのみ比例する。
+     * @param students 受講生一覧
+     * @return 受講生詳細の一覧（引数の受講生と同じ順序）*/
+    public List<StudentDetail> load(List<Student> students) {
+        return load(students, true, true);
+    }
+
+    /*受講生の一覧に、指定されたものだけ最新のコース情報と最新の受講状況を紐づける（fields=パラメータ用）。
+     * 取得しない方は問い合わせず、受講生詳細には空のリストを設定する。
+     * @param students 受講生一覧
+     * @param courses コース情報を取得する場合はtrue
+     * @param courseStatuses 受講状況を取得する場合はtrue
+     * @return 受講生詳細の一覧（引数の受講生と同じ順序）*/
+    public List<StudentDetail> load(List<Student> students, boolean courses, boolean courseStatuses) {
+        List<StudentDetail> studentDetails = new ArrayList<>(students.size());
+        if (students.isEmpty()) {
+            return studentDetails;
+        }
+
+        List<Integer> studentIds = students.stream()
+                .map(Student::getId)
+                .toList();
+
+        Map<Integer, List<StudentsCourse>> coursesByStudentId = new HashMap<>();
+        Map<Integer, List<CourseStatusDTO>> statusesByStudentId = new HashMap<>();
+
+        for (int from = 0; from < studentIds.size(); from += CHUNK_SIZE) {
+            List<Integer> chunk = studentIds.subList(from, Math.min(from + CHUNK_SIZE, studentIds.size()));
+
+            if (courses) {
+                repository.findLatestStudentCoursesByStudentIds(chunk).forEach(course ->
+                        coursesByStudentId.computeIfAbsent(course.getStudentId(), id -> new ArrayList<>()).add(course));
+            }
+            if (courseStatuses) {
+                repository.findLatestCourseStatusesByStudentIds(chunk).forEach(status ->
+                        statusesByStudentId.computeIfAbsent(status.getStudentId(), id -> new ArrayList<>()).add(status));
+            }
+        }
+
+        for (Student student : students) {
+            StudentDetail studentDetail = new StudentDetail();
+            studentDetail.setStudent(student);
+            studentDetail.setStudentCourseList(
+                    coursesByStudentId.getOrDefault(student.getId(), new ArrayList<>()));
+            studentDetail.setCourseStatuses(
+                    statusesByStudentId.getOrDefault(student.getId(), new ArrayList<>()));
+            studentDetails.add(studentDetail);
+        }
+
+        return studentDetails;
+    }
+}
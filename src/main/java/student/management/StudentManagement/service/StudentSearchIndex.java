@@ -0,0 +1,204 @@
+package student.management.StudentManagement.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.data.StudentSuggestion;
+import student.management.StudentManagement.data.StudentsCourse;
+import student.management.StudentManagement.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*受講生名（氏名・フリガナ）とコース名の部分一致検索、および受講生の入力補完に使用するインメモリのインデックス。
+ * LIKE '%...%'ではB-treeインデックスが使えず全件走査になるため、トライグラムの転置インデックスで
+ * 該当する受講生IDを求め、データベースへは主キーでの取得のみを行う。
+ * 入力補完はフリガナ・氏名・ニックネームの前方一致（かな・全角半角を正規化）で、データベースに問い合わせずに答える。
+ * 起動時に削除されていない全受講生から作成し、受講生の登録・更新・論理削除のコミット後に該当IDを読み直す。
+ * 読み直しはコミットの順に番号を付け、並行した読み直しの完了が前後しても、受講生ごとに後の番号の内容を残す。
+ * student.search-index.enabled=falseの場合は作成せず、検索はデータベースで行う。*/
+@Component
+@Slf4j
+public class StudentSearchIndex {
+
+    private final StudentRepository repository;
+    private final boolean enabled;
+
+    private final TrigramIndex names = new TrigramIndex();
+    private final TrigramIndex courseNames = new TrigramIndex();
+    private final PrefixIndex suggestTerms = new PrefixIndex();
+    private final Map<Integer, StudentSuggestion> suggestions = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+    /*作成中に読み直された受講生ID。作成処理が読んだ古い内容で上書きしないよう、作成処理では登録しない*/
+    private final Set<Integer> refreshedWhileBuilding = ConcurrentHashMap.newKeySet();
+    /*読み直しの番号（コミット後に採番する）*/
+    private final AtomicLong refreshSequence = new AtomicLong();
+    /*受講生IDごとに反映した読み直しの番号。先に読んだ古い内容を後から反映しないようにする*/
+    private final Map<Integer, Long> appliedRefreshes = new ConcurrentHashMap<>();
+
+    public StudentSearchIndex(StudentRepository repository,
+                              @Value("${student.search-index.enabled:true}") boolean enabled) {
+        this.repository = repository;
+        this.enabled = enabled;
+    }
+
+    /*削除されていない全受講生をID順にチャンク単位で読み込み、インデックスを作成する*/
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int afterId = 0;
+        int indexed = 0;
+        while (true) {
+            List<Student> students = repository.findStudentsAfter(afterId, StudentDetailLoader.CHUNK_SIZE);
+            if (students.isEmpty()) {
+                break;
+            }
+            List<Integer> studentIds = students.stream().map(Student::getId).toList();
+            index(students, repository.findStudentCoursesByStudentIds(studentIds), true);
+            indexed += students.size();
+            afterId = studentIds.get(studentIds.size() - 1);
+        }
+        ready = true;
+        refreshedWhileBuilding.clear();
+        log.info("Student search index built: {} students in {} ms", indexed, System.currentTimeMillis() - start);
+    }
+
+    /*インデックスが作成済みで検索に使用できるか*/
+    public boolean isReady() {
+        return ready;
+    }
+
+    /*受講生の登録・更新・論理削除の後に呼び出し、該当する受講生をインデックスに反映する。
+     * トランザクション内で呼ばれた場合はコミット後に読み直す。
+     * @param studentIds 受講生IDのリスト*/
+    public void refresh(Collection<Integer> studentIds) {
+        if (!enabled || studentIds.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = List.copyOf(studentIds);
+        AfterCommit.run(() -> reload(ids, refreshSequence.incrementAndGet()));
+    }
+
+    /*受講生を読み直して反映する。
+     * @param sequence 読み直しの番号（データベースから読む前に採番したもの）*/
+    private void reload(List<Integer> studentIds, long sequence) {
+        if (!ready) {
+            refreshedWhileBuilding.addAll(studentIds);
+        }
+        for (int from = 0; from < studentIds.size(); from += StudentDetailLoader.CHUNK_SIZE) {
+            List<Integer> chunk = studentIds.subList(from, Math.min(from + StudentDetailLoader.CHUNK_SIZE, studentIds.size()));
+            List<Student> students = repository.findStudentsByIds(chunk);
+            Map<Integer, List<String>> courseNamesByStudentId =
+                    groupCourseNames(repository.findStudentCoursesByStudentIds(chunk));
+            for (Student student : students) {
+                applyIfNewer(student.getId(), sequence,
+                        () -> put(student, courseNamesByStudentId.getOrDefault(student.getId(), List.of())));
+            }
+
+            // 見つからない（論理削除された）受講生はインデックスから除く
+            Set<Integer> found = new HashSet<>();
+            students.forEach(student -> found.add(student.getId()));
+            chunk.stream().filter(id -> !found.contains(id)).forEach(id -> applyIfNewer(id, sequence, () -> remove(id)));
+        }
+    }
+
+    /*受講生について、これより後の番号の読み直しがまだ反映されていない場合のみapplyを実行する。
+     * 同じ受講生の反映は受講生IDごとに直列に行う*/
+    private void applyIfNewer(Integer studentId, long sequence, Runnable apply) {
+        appliedRefreshes.compute(studentId, (id, applied) -> {
+            if (applied != null && applied >= sequence) {
+                return applied;
+            }
+            apply.run();
+            return sequence;
+        });
+    }
+
+    private void index(List<Student> students, List<StudentsCourse> courses, boolean building) {
+        Map<Integer, List<String>> courseNamesByStudentId = groupCourseNames(courses);
+        for (Student student : students) {
+            if (building && refreshedWhileBuilding.contains(student.getId())) {
+                continue;
+            }
+            put(student, courseNamesByStudentId.getOrDefault(student.getId(), List.of()));
+        }
+    }
+
+    private static Map<Integer, List<String>> groupCourseNames(List<StudentsCourse> courses) {
+        Map<Integer, List<String>> courseNamesByStudentId = new HashMap<>();
+        courses.forEach(course -> courseNamesByStudentId
+                .computeIfAbsent(course.getStudentId(), id -> new ArrayList<>())
+                .add(course.getCourseName()));
+        return courseNamesByStudentId;
+    }
+
+    private void put(Student student, List<String> studentCourseNames) {
+        names.put(student.getId(), Arrays.asList(student.getStudentName(), student.getFurigana()));
+        courseNames.put(student.getId(), studentCourseNames);
+        suggestions.put(student.getId(), new StudentSuggestion(student.getId(), student.getStudentName(),
+                student.getFurigana(), student.getNickname()));
+        suggestTerms.put(student.getId(),
+                Arrays.asList(student.getFurigana(), student.getStudentName(), student.getNickname()));
+    }
+
+    private void remove(Integer studentId) {
+        names.remove(studentId);
+        courseNames.remove(studentId);
+        suggestTerms.remove(studentId);
+        suggestions.remove(studentId);
+    }
+
+    /*氏名・フリガナとコース名の部分一致で受講生IDを検索する。両方指定した場合は両方に一致するものを返す。
+     * @param name 氏名またはフリガナ（nullや空文字の場合は条件にしない）
+     * @param courseName コース名（nullや空文字の場合は条件にしない）
+     * @return 受講生IDのリスト（昇順）*/
+    public List<Integer> search(String name, String courseName) {
+        Set<Integer> result = null;
+        if (name != null && !name.isEmpty()) {
+            result = names.search(name);
+        }
+        if (courseName != null && !courseName.isEmpty()) {
+            Set<Integer> byCourseName = courseNames.search(courseName);
+            if (result == null) {
+                result = byCourseName;
+            } else {
+                result.retainAll(byCourseName);
+            }
+        }
+        if (result == null) {
+            return List.of();
+        }
+        return result.stream().sorted().toList();
+    }
+
+    /*フリガナ・氏名・ニックネームのいずれかが入力された文字列で始まる受講生を返す。
+     * ひらがな・カタカナ、全角・半角の違いは区別しない。
+     * @param prefix 入力された文字列
+     * @param limit 最大件数
+     * @return 入力補完の候補（一致した語の辞書順）*/
+    public List<StudentSuggestion> suggest(String prefix, int limit) {
+        List<StudentSuggestion> result = new ArrayList<>();
+        for (Integer studentId : suggestTerms.search(prefix, limit)) {
+            StudentSuggestion suggestion = suggestions.get(studentId);
+            if (suggestion != null) {
+                result.add(suggestion);
+            }
+        }
+        return result;
+    }
+}
@@ -1,8 +1,9 @@
 package student.management.StudentManagement.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -10,23 +11,36 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import student.management.StudentManagement.Controller.converter.StudentConverter;
+import student.management.StudentManagement.config.ReadYourWrites;
 import student.management.StudentManagement.data.CourseStatusDTO;
+import student.management.StudentManagement.data.EnrollmentStatsDTO;
 import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.data.StudentExportRow;
+import student.management.StudentManagement.data.StudentSuggestion;
 import student.management.StudentManagement.data.StudentsCourse;
+import student.management.StudentManagement.domain.StudentCursor;
 import student.management.StudentManagement.domain.StudentDetail;
+import student.management.StudentManagement.domain.StudentFields;
+import student.management.StudentManagement.domain.StudentJsonPage;
+import student.management.StudentManagement.domain.StudentPage;
+import student.management.StudentManagement.exception.StudentApiException;
+import student.management.StudentManagement.exception.StudentVersionConflictException;
 import student.management.StudentManagement.repository.StudentRepository;
+import student.management.StudentManagement.service.ChangeVersions.Table;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.session.SqlSession;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
@@ -39,8 +53,26 @@ import lombok.extern.slf4j.Slf4j;
 /* ログを確認してデバッグを行うこと*/
 public class StudentService {
 
+    /*ページングで１ページに返す件数の既定値と上限*/
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /*入力補完で返す候補の件数の既定値と上限*/
+    public static final int DEFAULT_SUGGEST_LIMIT = 10;
+    public static final int MAX_SUGGEST_LIMIT = 50;
+
+    /*エクスポート時にレスポンスへ書き出す（flushする）受講生の件数の間隔*/
+    private static final int EXPORT_FLUSH_INTERVAL = 1000;
+
     private final StudentRepository repository;
     private StudentConverter converter;
+    private final StudentDetailLoader detailLoader;
+    private final ObjectMapper objectMapper;
+    private final StudentDetailCache detailCache;
+    private final StudentSearchIndex searchIndex;
+    private final EnrollmentStatistics enrollmentStatistics;
+    private final StudentApiClient studentApiClient;
+    private final ChangeVersions changeVersions;
     /*finalを宣言すると、そのクラスを継承したクラスにおいてそのメソッドを
      * オーバーライドできなくなる。コンストラクタの宣言にfinalを使用することはない*/
 
@@ -48,9 +80,20 @@ public class StudentService {
     private JdbcTemplate jdbcTemplate;
     private SqlSession sqlsession;
 
-    public StudentService(StudentRepository repository, StudentConverter converter) {
+    public StudentService(StudentRepository repository, StudentConverter converter,
+                          StudentDetailLoader detailLoader, ObjectMapper objectMapper,
+                          StudentDetailCache detailCache, StudentSearchIndex searchIndex,
+                          EnrollmentStatistics enrollmentStatistics, StudentApiClient studentApiClient,
+                          ChangeVersions changeVersions) {
         this.repository = repository;
         this.converter = converter;
+        this.detailLoader = detailLoader;
+        this.objectMapper = objectMapper;
+        this.detailCache = detailCache;
+        this.searchIndex = searchIndex;
+        this.enrollmentStatistics = enrollmentStatistics;
+        this.studentApiClient = studentApiClient;
+        this.changeVersions = changeVersions;
     }
     /*本来はnewが入らないとインスタンスとして機能しないが、SpringBootの@Serviceで
     インスタンスとして呼び出すことが可能。更にAutowiredでStudentManagementApplicationの
@@ -59,62 +102,207 @@ public class StudentService {
     /*受講生一覧詳細検索機能。
      * 全件検索を行うため、条件指定は行わない。
      * @return 受講生一覧（全件検索）*/
+    @Transactional(readOnly = true)
     public List<StudentDetail> getAllStudents() {
         // 全学生情報を取得
         List<Student> students = repository.findAllStudents();
 
-        // 学生ごとに詳細情報をセット
-        List<StudentDetail> studentDetails = new ArrayList<>();
+        // 受講情報と最新の受講ステータスを一括で取得して詳細情報をセット
+        return detailLoader.load(students);
+    }
+
+    /*受講生の全ての情報を取得する。ただしisDeletedがtrueの受講生情報は除外する*/
+    @Transactional(readOnly = true)
+    public List<StudentDetail> getAllStudentsWithCourseStatuses() {
+        // 'isDeleted' が true の学生を除外
+        List<Student> students = repository.findAllStudents().stream()
+                .filter(student -> !student.getIsDeleted())
+                .collect(Collectors.toList());
 
-        for (Student student : students) {
-            // 受講情報（仮申込）を取得
-            List<StudentsCourse> studentsCourses = repository.getStudentCourses(student.getId());
+        // 学生のコース情報と最新の受講ステータスを一括で取得
+        return detailLoader.load(students);
+    }
 
-            // 最新の受講ステータス（本申込）を取得
-            List<CourseStatusDTO> courseStatuses = repository.getCourseStatuses(student.getId());
+    /*getAllStudentsWithCourseStatusesと同じ受講生一覧を、シリアライズ済みのJSON配列として取得する。
+     * キャッシュにある受講生はそのJSONを連結し、ない受講生のみコース情報と受講状況を一括で取得してシリアライズする。
+     * キャッシュに保存するため、レプリカではなくプライマリから読み込む。*/
+    @Transactional(readOnly = true)
+    public byte[] getAllStudentsWithCourseStatusesJson() {
+        return ReadYourWrites.onPrimary(() -> {
+            // 受講生を読み込んだ後に破棄された受講生をキャッシュしないよう、読み込む前の破棄の回数を渡す
+            long stamp = detailCache.invalidationStamp();
+            List<Student> students = repository.findAllStudents().stream()
+                    .filter(student -> !student.getIsDeleted())
+                    .collect(Collectors.toList());
+
+            return detailCache.getJsonArray(students, detailLoader::load, stamp);
+        });
+    }
 
-            // StudentDetail を作成
-            StudentDetail studentDetail = new StudentDetail();
-            studentDetail.setStudent(student);
-            studentDetail.setStudentCourseList(studentsCourses);
-            studentDetail.setCourseStatuses(courseStatuses);
+    /*受講生一覧をID順にページ単位で取得する（キーセットページング）。
+     * １件多く取得して次ページの有無を判定し、次ページがある場合のみカーソルを返す。
+     * @param cursor 前ページのレスポンスで受け取ったカーソル（先頭ページはnull）
+     * @param limit １ページの件数（1〜MAX_PAGE_SIZEに丸める）
+     * @return 受講生詳細の１ページ分*/
+    @Transactional(readOnly = true)
+    public StudentPage getStudentPage(String cursor, Integer limit) {
+        return findStudentPage(cursor, limit,
+                (students, nextCursor) -> new StudentPage(detailLoader.load(students), nextCursor));
+    }
 
-            studentDetails.add(studentDetail);
+    /*getStudentPageと同じ１ページ分を、シリアライズ済みのJSON配列として取得する。
+     * @param cursor 前ページのレスポンスで受け取ったカーソル（先頭ページはnull）
+     * @param limit １ページの件数（1〜MAX_PAGE_SIZEに丸める）
+     * キャッシュに保存するため、レプリカではなくプライマリから読み込む。
+     * @return 受講生詳細のJSON配列と次ページのカーソル*/
+    @Transactional(readOnly = true)
+    public StudentJsonPage getStudentPageJson(String cursor, Integer limit) {
+        return ReadYourWrites.onPrimary(() -> {
+            long stamp = detailCache.invalidationStamp();
+            return findStudentPage(cursor, limit, (students, nextCursor) ->
+                    new StudentJsonPage(detailCache.getJsonArray(students, detailLoader::load, stamp), nextCursor));
+        });
+    }
+
+    /*受講生一覧を、指定された項目のみのJSON配列として取得する（fields=パラメータ）。
+     * SELECTする列を指定された項目に絞り、コース情報・受講状況は指定された場合のみ取得する。
+     * 受講生詳細キャッシュ（全項目）は使用しない。
+     * cursorとlimitがどちらもnullの場合は削除されていない全ての受講生、それ以外はgetStudentPageJsonと同じ１ページ分を返す。
+     * @param fields 返す項目
+     * @param cursor 前ページのレスポンスで受け取ったカーソル（先頭ページはnull）
+     * @param limit １ページの件数（1〜MAX_PAGE_SIZEに丸める）
+     * @return 指定された項目のJSON配列と次ページのカーソル*/
+    @Transactional(readOnly = true)
+    public StudentJsonPage getStudentListJson(StudentFields fields, String cursor, Integer limit) {
+        if (cursor == null && limit == null) {
+            return new StudentJsonPage(writeStudentsJson(repository.findStudentColumns(fields), fields), null);
         }
+        return findStudentPage(cursor, limit,
+                (afterId, pageSize) -> repository.findStudentColumnsAfter(fields, afterId, pageSize),
+                (students, nextCursor) -> new StudentJsonPage(writeStudentsJson(students, fields), nextCursor));
+    }
 
-        return studentDetails;
+    private <T> T findStudentPage(String cursor, Integer limit, BiFunction<List<Student>, String, T> toPage) {
+        return findStudentPage(cursor, limit, repository::findStudentsAfter, toPage);
     }
 
-    /*受講生の全ての情報を取得する。ただしisDeletedがtrueの受講生情報は除外する*/
-    public List<StudentDetail> getAllStudentsWithCourseStatuses() {
-        List<Student> students = repository.findAllStudents();
+    private <T> T findStudentPage(String cursor, Integer limit, BiFunction<Integer, Integer, List<Student>> finder,
+                                  BiFunction<List<Student>, String, T> toPage) {
+        int afterId = StudentCursor.decode(cursor);
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
 
-        List<StudentDetail> studentDetails = new ArrayList<>();
+        List<Student> students = finder.apply(afterId, pageSize + 1);
+        String nextCursor = null;
+        if (students.size() > pageSize) {
+            students = students.subList(0, pageSize);
+            nextCursor = StudentCursor.encode(students.get(pageSize - 1).getId());
+        }
+
+        return toPage.apply(students, nextCursor);
+    }
 
-        for (Student student : students) {
-            // 'isDeleted' が true の場合はその学生を除外
-            if (student.getIsDeleted()) {
-                continue; // この学生をスキップ
+    /*削除されていない全受講生をNDJSON（１行に１受講生のJSON）で出力する。
+     * 受講生・コース情報・最新の受講状況を結合した結果をCursorで１行ずつ読み、受講生IDが
+     * 切り替わった時点でその受講生の詳細を書き出すため、全件をリストに保持することはない。
+     * Cursorの読み出し中は接続を保持する必要があるため、トランザクション内で実行する。
+     * @param out 出力先（レスポンスのストリーム）*/
+    @Transactional(readOnly = true)
+    public void exportStudents(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (Cursor<StudentExportRow> cursor = repository.streamStudentsWithCourses();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            StudentDetail current = null;
+            int written = 0;
+            for (StudentExportRow row : cursor) {
+                if (current == null || !current.getStudent().getId().equals(row.getStudentId())) {
+                    if (current != null) {
+                        writeNdjsonLine(writer, generator, current);
+                        if (++written % EXPORT_FLUSH_INTERVAL == 0) {
+                            generator.flush();
+                        }
+                    }
+                    current = toExportDetail(row);
+                }
+                addExportCourse(current, row);
+            }
+            if (current != null) {
+                writeNdjsonLine(writer, generator, current);
             }
+            generator.flush();
+        }
+    }
 
-            // 学生のコース情報を取得
-            List<StudentsCourse> studentsCourses = repository.getStudentCourses(student.getId());
+    /*受講生の一覧を、指定された項目のみの受講生詳細のJSON配列に書き出す。
+     * 受講生詳細と同じ形（student・studentCourseList・courseStatuses）で、指定されていない項目は出力しない*/
+    private byte[] writeStudentsJson(List<Student> students, StudentFields fields) {
+        boolean withCourses = fields.includesCourses() || fields.includesCourseStatuses();
+        List<StudentDetail> details = withCourses
+                ? detailLoader.load(students, fields.includesCourses(), fields.includesCourseStatuses())
+                : null;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            for (int i = 0; i < students.size(); i++) {
+                Student student = students.get(i);
+                generator.writeStartObject();
+                generator.writeObjectFieldStart("student");
+                for (StudentFields.StudentField field : fields.getStudentFields()) {
+                    generator.writeObjectField(field.getProperty(), field.get(student));
+                }
+                generator.writeEndObject();
+                if (fields.includesCourses()) {
+                    generator.writeObjectField(StudentFields.COURSES, details.get(i).getStudentCourseList());
+                }
+                if (fields.includesCourseStatuses()) {
+                    generator.writeObjectField(StudentFields.COURSE_STATUSES, details.get(i).getCourseStatuses());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
 
-            // 最新の受講ステータスを取得
-            List<CourseStatusDTO> courseStatuses = repository.getLatestCourseStatus(student.getId());
+    private void writeNdjsonLine(ObjectWriter writer, JsonGenerator generator, StudentDetail detail)
+            throws IOException {
+        writer.writeValue(generator, detail);
+        generator.writeRaw('\n');
+    }
 
-            // StudentDetail を作成
-            StudentDetail studentDetail = new StudentDetail();
-            studentDetail.setStudent(student); // 学生情報をセット
-            studentDetail.setStudentCourseList(studentsCourses); // コース情報をセット
-            studentDetail.setCourseStatuses(courseStatuses); // 最新の受講ステータスをセット
+    /*エクスポート行の受講生部分から受講生詳細を作成する*/
+    private StudentDetail toExportDetail(StudentExportRow row) {
+        Student student = new Student(row.getStudentId(), row.getStudentName(), row.getFurigana(),
+                row.getNickname(), row.getEmail(), row.getRegion(), row.getAge(), row.getGender());
+        student.setRemark(row.getRemark());
+        student.setIsDeleted(row.getIsDeleted());
+        return new StudentDetail(student, new ArrayList<>(), new ArrayList<>());
+    }
 
-            studentDetails.add(studentDetail);
+    /*エクスポート行のコース部分を受講生詳細に追加する（コースのない受講生はスキップ）*/
+    private void addExportCourse(StudentDetail detail, StudentExportRow row) {
+        if (row.getCourseId() == null) {
+            return;
+        }
+        StudentsCourse course = new StudentsCourse(row.getCourseId(), row.getStartDate(), row.getEndDate(),
+                row.getStatus(), row.getStudentId(), row.getCourseName());
+        course.setStatus(row.getStatus());
+        detail.getStudentCourseList().add(course);
+
+        if (row.getStatus() != null) {
+            CourseStatusDTO courseStatus = new CourseStatusDTO(row.getCourseId(), row.getStatus());
+            courseStatus.setCourseName(row.getCourseName());
+            detail.getCourseStatuses().add(courseStatus);
         }
-
-        return studentDetails;
     }
 
+    @Transactional(readOnly = true)
     public List<Student> getStudentByGender(String gender) {
         log.info("Searching students with gender: {}", gender);  // genderパラメータのログ
         if (gender == null || gender.isEmpty() || (!gender.equalsIgnoreCase("Male") && !gender.equalsIgnoreCase("Female") && !gender.equalsIgnoreCase("Other"))) {
@@ -127,13 +315,17 @@ public class StudentService {
      * IDに紐づく任意の受講生の情報を取得する。
      * @param id 受講生ID
      * @return 受講生詳細*/
+    @Transactional(readOnly = true)
     public StudentDetail searchStudent(Integer studentId, String gender) {
         List<Student> students = new ArrayList<>();
 
         if (studentId != null) {
-            Long studentIdLong = studentId.longValue();
-            Optional<Student> optionalStudent = repository.findStudentById(studentIdLong);
-            optionalStudent.ifPresent(students::add);
+            // IDで検索する場合はキャッシュから取得する（キャッシュに保存するため、プライマリから読み込む）
+            StudentDetail studentDetail = ReadYourWrites.onPrimary(() -> detailCache.get(studentId, this::loadStudentDetail));
+            if (studentDetail != null) {
+                log.info("Student name: {}", studentDetail.getStudent().getStudentName());
+            }
+            return studentDetail;
         } else if (gender != null) {
             students = repository.findStudentByGender(gender);
         } else {
@@ -158,13 +350,9 @@ public class StudentService {
 
 
     /*特定の性別の受講生情報を全て取得する*/
+    @Transactional(readOnly = true)
     public List<StudentDetail> searchStudentsByGender(String gender) {
-        // 性別が無効な場合はエラーをスロー
-        if (gender == null || gender.isEmpty() || (!gender.equalsIgnoreCase("Male") && !gender.equalsIgnoreCase("Female") && !gender.equalsIgnoreCase("Other"))) {
-            throw new IllegalArgumentException("Invalid gender value");
-        }
-
-        List<StudentDetail> studentDetails = new ArrayList<>();
+        validateGender(gender);
 
         // 性別で学生を検索
         List<Student> students = repository.findStudentByGender(gender);
@@ -173,21 +361,27 @@ public class StudentService {
             throw new IllegalArgumentException("No students found for the given gender.");
         }
 
-        // 各学生に対して、コース情報と受講ステータスを取得
-        for (Student student : students) {
-            List<StudentsCourse> studentsCourses = repository.getStudentCourses(student.getId());
-            List<CourseStatusDTO> courseStatuses = repository.getLatestCourseStatus(student.getId());
+        // 全学生のコース情報と受講ステータスを一括で取得
+        return detailLoader.load(students);
+    }
 
-            // StudentDetail を作成
-            StudentDetail studentDetail = new StudentDetail();
-            studentDetail.setStudent(student); // 学生情報をセット
-            studentDetail.setStudentCourseList(studentsCourses); // コース情報をセット
-            studentDetail.setCourseStatuses(courseStatuses); // 最新の受講ステータスをセット
+    /*searchStudentsByGenderと同じ検索を、指定された項目のみのJSON配列として取得する*/
+    @Transactional(readOnly = true)
+    public byte[] searchStudentsByGenderJson(String gender, StudentFields fields) {
+        validateGender(gender);
 
-            studentDetails.add(studentDetail);
+        List<Student> students = repository.findStudentColumnsByGender(fields, gender);
+        if (students.isEmpty()) {
+            throw new IllegalArgumentException("No students found for the given gender.");
         }
+        return writeStudentsJson(students, fields);
+    }
 
-        return studentDetails;
+    /*性別が無効な場合はエラーをスロー*/
+    private static void validateGender(String gender) {
+        if (gender == null || gender.isEmpty() || (!gender.equalsIgnoreCase("Male") && !gender.equalsIgnoreCase("Female") && !gender.equalsIgnoreCase("Other"))) {
+            throw new IllegalArgumentException("Invalid gender value");
+        }
     }
 
     /*StudentをStudentDetailに変更するメソッド*/
@@ -198,29 +392,63 @@ public class StudentService {
         return detail;
     }
 
+    @Transactional(readOnly = true)
     public StudentDetail searchStudentById(Integer studentId) {
-        // 学生をIDで検索
-        Student student = repository.findStudentById(studentId.longValue())
-                .orElseThrow(() -> new NoSuchElementException("Student not found with ID: " + studentId));
+        // 学生をIDで検索（キャッシュになければプライマリから読み込む）
+        StudentDetail studentDetail = ReadYourWrites.onPrimary(() -> detailCache.get(studentId, this::loadStudentDetail));
+        if (studentDetail == null) {
+            throw new NoSuchElementException("Student not found with ID: " + studentId);
+        }
+        return studentDetail;
+    }
+
+    /*受講生詳細をシリアライズ済みのJSONとして取得する（キャッシュになければプライマリから読み込む）。
+     * @param studentId 受講生ID
+     * @param gzip gzip圧縮したJSONを取得する場合はtrue
+     * @return JSON（受講生が存在しない場合はnull）*/
+    @Transactional(readOnly = true)
+    public byte[] searchStudentJson(Integer studentId, boolean gzip) {
+        return ReadYourWrites.onPrimary(() -> detailCache.getJson(studentId, this::loadStudentDetail, gzip));
+    }
+
+    /*受講生詳細をデータベースから読み込む（キャッシュのローダー）。
+     * キャッシュに保存する値がレプリカの遅れで古くならないよう、ReadYourWrites.onPrimaryの中で呼ぶ。
+     * 削除されていない受講生に、最新のコース情報と最新の受講状況を紐づける。
+     * @param studentId 受講生ID
+     * @return 受講生詳細（存在しない場合はnull）*/
+    private StudentDetail loadStudentDetail(Integer studentId) {
+        Optional<Student> optionalStudent = repository.findStudentById(studentId.longValue());
+        if (optionalStudent.isEmpty()) {
+            return null;
+        }
+        Student student = optionalStudent.get();
+
+        List<StudentsCourse> studentsCourses = repository.getStudentCourses(student.getId());
+        List<CourseStatusDTO> courseStatuses = repository.getLatestCourseStatus(student.getId());
+        return new StudentDetail(student, studentsCourses, courseStatuses);
+    }
 
-        // 学生の受講コースを取得して変換
-        List<StudentsCourse> studentCourseList = repository.getStudentCourses(student.getId()).stream()
-                .map(dto -> new StudentsCourse(
-                        dto.getId(),
-                        dto.getStartDate(),  // String型の日付
-                        dto.getEndDate(),    // String型の日付
-                        dto.getStatus(),
-                        dto.getStudentId(),
-                        dto.getCourseName()))
-                .collect(Collectors.toList());  // List<StudentsCourse>に変換
+    /*受講生一覧・受講生詳細のETag（受講生・受講生コース情報・受講状況のバージョン）を取得する*/
+    public String getStudentsEtag() {
+        return changeVersions.etag(Table.STUDENTS, Table.STUDENTS_COURSES, Table.STUDENTS_COURSES_STATUS);
+    }
 
-        // コースステータスを取得
-        List<CourseStatusDTO> courseStatusList = repository.getCourseStatuses(student.getId());
+    /*受講生コースの受講状況のETag（受講生コース情報・受講状況のバージョン）を取得する*/
+    public String getCourseStatusEtag() {
+        return changeVersions.etag(Table.STUDENTS_COURSES, Table.STUDENTS_COURSES_STATUS);
+    }
 
-        // StudentDetailを返す
-        return new StudentDetail(student, studentCourseList, courseStatusList);
+    /*コース名・受講状況・地域・性別ごとの件数を取得する（データベースには問い合わせない）*/
+    public EnrollmentStatsDTO getEnrollmentStats() {
+        return enrollmentStatistics.get();
     }
 
+    /*受講生詳細キャッシュの統計情報を取得する*/
+    public Map<String, Object> getStudentCacheStats() {
+        return detailCache.stats();
+    }
+
+    @Transactional(readOnly = true)
     public List<CourseStatusDTO> getCourseStatuses(Integer studentId) {
         if (studentId == null) {
             throw new IllegalArgumentException("studentId cannot be null");
@@ -231,26 +459,72 @@ public class StudentService {
     }
 
     /*特定のコース名の受講生情報を全て取得する*/
+    @Transactional(readOnly = true)
     public List<StudentDetail> searchStudentsByCourseName(String courseName) {
         List<Student> students = repository.findStudentsByCourseName(courseName);
-        List<StudentDetail> studentDetails = new ArrayList<>();
+        log.debug("Found {} students for course {}", students.size(), courseName);
 
-        for (Student student : students) {
-            List<StudentsCourse> studentsCourses = repository.getStudentCourses(student.getId());
+        return detailLoader.load(students);
+    }
 
-            log.info("Student Courses for {}: {}", student.getStudentName(), studentsCourses);
+    /*searchStudentsByCourseNameと同じ検索を、指定された項目のみのJSON配列として取得する*/
+    @Transactional(readOnly = true)
+    public byte[] searchStudentsByCourseNameJson(String courseName, StudentFields fields) {
+        return writeStudentsJson(repository.findStudentColumnsByCourseName(fields, courseName), fields);
+    }
 
-            List<CourseStatusDTO> courseStatuses = repository.getLatestCourseStatus(student.getId());
+    /*氏名・フリガナとコース名の部分一致で受講生を検索する。
+     * 検索インデックスで該当する受講生IDを求め、受講生は主キーで取得する。
+     * インデックスが作成前の場合はデータベースのLIKE検索で受講生IDを求める。
+     * @param name 氏名またはフリガナ
+     * @param courseName コース名
+     * @return 受講生詳細の一覧（ID昇順）*/
+    @Transactional(readOnly = true)
+    public List<StudentDetail> searchStudentsByText(String name, String courseName) {
+        List<Integer> studentIds = searchStudentIdsByText(name, courseName);
+
+        List<Student> students = new ArrayList<>(studentIds.size());
+        for (int from = 0; from < studentIds.size(); from += StudentDetailLoader.CHUNK_SIZE) {
+            students.addAll(repository.findStudentsByIds(
+                    studentIds.subList(from, Math.min(from + StudentDetailLoader.CHUNK_SIZE, studentIds.size()))));
+        }
+        return detailLoader.load(students);
+    }
 
-            StudentDetail studentDetail = new StudentDetail();
-            studentDetail.setStudent(student);
-            studentDetail.setStudentCourseList(studentsCourses);
-            studentDetail.setCourseStatuses(courseStatuses);
+    /*searchStudentsByTextと同じ検索を、指定された項目のみのJSON配列として取得する*/
+    @Transactional(readOnly = true)
+    public byte[] searchStudentsByTextJson(String name, String courseName, StudentFields fields) {
+        List<Integer> studentIds = searchStudentIdsByText(name, courseName);
 
-            studentDetails.add(studentDetail);
+        List<Student> students = new ArrayList<>(studentIds.size());
+        for (int from = 0; from < studentIds.size(); from += StudentDetailLoader.CHUNK_SIZE) {
+            students.addAll(repository.findStudentColumnsByIds(fields,
+                    studentIds.subList(from, Math.min(from + StudentDetailLoader.CHUNK_SIZE, studentIds.size()))));
         }
+        return writeStudentsJson(students, fields);
+    }
 
-        return studentDetails;
+    private List<Integer> searchStudentIdsByText(String name, String courseName) {
+        if ((name == null || name.isBlank()) && (courseName == null || courseName.isBlank())) {
+            throw new IllegalArgumentException("name or courseName is required");
+        }
+
+        return searchIndex.isReady()
+                ? searchIndex.search(name, courseName)
+                : repository.searchStudentIdsByText(name, courseName);
+    }
+
+    /*受講生の入力補完の候補を取得する。データベースには問い合わせず、検索インデックスから返す
+     * （インデックスの作成前は空のリストを返す）。
+     * @param prefix 入力された文字列（フリガナ・氏名・ニックネームの先頭部分）
+     * @param limit 最大件数（1〜MAX_SUGGEST_LIMITに丸める）
+     * @return 入力補完の候補*/
+    public List<StudentSuggestion> suggestStudents(String prefix, Integer limit) {
+        int size = limit == null ? DEFAULT_SUGGEST_LIMIT : Math.max(1, Math.min(limit, MAX_SUGGEST_LIMIT));
+        if (!searchIndex.isReady()) {
+            return List.of();
+        }
+        return searchIndex.suggest(prefix, size);
     }
 
     public StudentDetail getStudentDetail(Long studentId) {
@@ -267,32 +541,14 @@ public class StudentService {
         return details.get(0);
     }
 
+    /*受講生一覧APIから受講生の一覧を取得する。
+     * @throws StudentApiException 接続エラー・タイムアウト・200番台以外の応答・JSONの解析エラーの場合*/
     public List<Student> fetchStudentsFromApi() {
         try {
-            URL url = new URL("http://localhost:8080/studentList");
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("GET");
-            con.setRequestProperty("Accept", "application/json");
-
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(con.getInputStream(), StandardCharsets.UTF_8));
-            StringBuilder response = new StringBuilder();
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                response.append(line.trim());
-            }
-            reader.close();
-
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
-            objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-
-            return objectMapper.readValue(response.toString(), new TypeReference<List<Student>>() {
-            });
-        } catch (Exception e) {
+            return studentApiClient.fetchStudents();
+        } catch (StudentApiException e) {
             log.error("Failed to fetch students from API", e);
-            throw new RuntimeException("Unable to fetch students from API.", e);
+            throw e;
         }
     }
 
@@ -318,6 +574,8 @@ public class StudentService {
             }
 
             Long generatedIdLong = generatedId.longValue();
+            searchIndex.refresh(List.of(generatedId));
+            changeVersions.bump(Table.STUDENTS, Table.STUDENTS_COURSES, Table.STUDENTS_COURSES_STATUS);
 
             // 受講コース情報とステータスを登録
             if (studentDetail.getStudentCourseList() != null) {
@@ -328,10 +586,14 @@ public class StudentService {
                     // 受講状況（CourseStatusDTO）の登録
                     if (studentsCourses.getStatus() != null) {
                         repository.registerCourseStatus(studentsCourses.getId(), studentsCourses.getStatus());
+                        repository.refreshLatestCourseStatus(studentsCourses.getId());
                     }
                 });
             }
 
+            enrollmentStatistics.recordChange(EnrollmentStatistics.Snapshot.EMPTY,
+                    enrollmentStatistics.snapshot(List.of(generatedId)));
+
             // 最新のStudentを取得し、詳細を返す
             Optional<Student> savedStudentOptional = repository.findStudentById(generatedIdLong);
             if (savedStudentOptional.isPresent()) {
@@ -362,6 +624,7 @@ public class StudentService {
     }
 
     /*受講生のコース受講状況を取得する*/
+    @Transactional(readOnly = true)
     public List<CourseStatusDTO> getStudentCourseStatus(Integer studentId) {
         return repository.findStudentCourseStatus(studentId);
     }
@@ -369,16 +632,32 @@ public class StudentService {
     /*受講生のコース受講状況を更新する*/
     @Transactional
     public void updateStudentCourseStatus(Integer studentsCoursesId, String status) {
+        Integer studentId = repository.findStudentIdByStudentsCoursesId(studentsCoursesId);
+        List<Integer> studentIds = studentId == null ? List.of() : List.of(studentId);
+        EnrollmentStatistics.Snapshot before = enrollmentStatistics.lockAndSnapshot(studentIds);
+
         repository.updateStudentCourseStatus(studentsCoursesId, status);
+        repository.refreshLatestCourseStatus(studentsCoursesId); // 最新の受講状況の射影も同じトランザクションで更新
+        enrollmentStatistics.recordChange(before, enrollmentStatistics.snapshot(studentIds));
+        changeVersions.bump(Table.STUDENTS_COURSES_STATUS);
+        detailCache.invalidate(studentId);
     }
 
+    @Transactional(readOnly = true)
     public List<CourseStatusDTO> getCourseStatusesByStudentId(Integer studentId) {
         return repository.getCourseStatusesByStudentId(studentId);
     }
 
+    @Transactional
     public void markAsDeleted(Long studentId) {
         log.debug("Marking student as deleted with ID: {}", studentId);
+        List<Integer> studentIds = List.of(studentId.intValue());
+        EnrollmentStatistics.Snapshot before = enrollmentStatistics.lockAndSnapshot(studentIds);
         repository.updateIsDeleted(studentId, true);
+        enrollmentStatistics.recordChange(before, enrollmentStatistics.snapshot(studentIds));
+        changeVersions.bump(Table.STUDENTS);
+        detailCache.invalidate(studentId.intValue());
+        searchIndex.refresh(List.of(studentId.intValue()));
     }
     /*lombokを使用している場合、import lombok.extern.slf4j.Slf4j; @Slf4jを
      * 使うことでログを表示できる。主にデバッグで使用する*/
@@ -392,26 +671,65 @@ public class StudentService {
             throw new IllegalArgumentException("Student object cannot be null.");
         }
 
-        int updatedRows = repository.updateStudent(studentDetail.getStudent());
-        if ( updatedRows == 0 ) {
-            throw new IllegalStateException("Failed to update student. Student with ID "
-                    + studentDetail.getStudent().getId() + " not found.");
-        }
+        List<Integer> studentIds = List.of(studentDetail.getStudent().getId());
+        EnrollmentStatistics.Snapshot before = enrollmentStatistics.lockAndSnapshot(studentIds);
+        updateStudentRow(studentDetail.getStudent());
+        enrollmentStatistics.recordChange(before, enrollmentStatistics.snapshot(studentIds));
+        changeVersions.bump(Table.STUDENTS);
+        detailCache.invalidate(studentDetail.getStudent().getId());
+        searchIndex.refresh(List.of(studentDetail.getStudent().getId()));
     }
 
     @Validated
     @Transactional
     public void updateStudentWithCourses(@Valid StudentDetail studentDetail) {
-        int updatedRows = repository.updateStudent(studentDetail.getStudent());
-        if ( updatedRows == 0 ) {
-            throw new IllegalStateException("Failed to update student. Student with ID "
-                    + studentDetail.getStudent().getId() + " not found.");
-        }
+        List<Integer> studentIds = List.of(studentDetail.getStudent().getId());
+        EnrollmentStatistics.Snapshot before = enrollmentStatistics.lockAndSnapshot(studentIds);
+        updateStudentRow(studentDetail.getStudent());
 
         studentDetail.getStudentCourseList().forEach(studentsCourses -> {
             studentsCourses.setStudentId(studentDetail.getStudent().getId());
-            repository.updateStudentCourse(studentsCourses);
+            updateStudentCourseRow(studentsCourses);
         });
+        enrollmentStatistics.recordChange(before, enrollmentStatistics.snapshot(studentIds));
+        changeVersions.bump(Table.STUDENTS, Table.STUDENTS_COURSES);
+        detailCache.invalidate(studentDetail.getStudent().getId());
+        searchIndex.refresh(List.of(studentDetail.getStudent().getId()));
+    }
+
+    /*受講生を更新する。versionを指定した場合は、その間に他の更新がなかったときのみ更新する。
+     * 更新した場合は受講生のversionを更新後の値にする。
+     * @throws StudentVersionConflictException versionが一致しない場合
+     * @throws IllegalStateException 受講生が存在しない場合*/
+    private void updateStudentRow(Student student) {
+        if (repository.updateStudent(student) == 0) {
+            if (student.getVersion() != null && repository.findStudentVersion(student.getId()) != null) {
+                throw new StudentVersionConflictException("Student with ID " + student.getId()
+                        + " was modified by another request (expected version " + student.getVersion() + ").");
+            }
+            throw new IllegalStateException("Failed to update student. Student with ID "
+                    + student.getId() + " not found.");
+        }
+        if (student.getVersion() != null) {
+            student.setVersion(student.getVersion() + 1);
+        }
+    }
+
+    /*受講生コース情報を更新する。versionを指定した場合は、その間に他の更新がなかったときのみ更新する。
+     * （versionを指定しない場合は、従来通り該当するコースがなくてもエラーにしない）
+     * @throws StudentVersionConflictException versionが一致しない場合*/
+    private void updateStudentCourseRow(StudentsCourse studentsCourse) {
+        if (repository.updateStudentCourse(studentsCourse) == 0) {
+            if (studentsCourse.getVersion() != null
+                    && repository.findStudentsCourseVersion(studentsCourse.getCourseId()) != null) {
+                throw new StudentVersionConflictException("Course with ID " + studentsCourse.getCourseId()
+                        + " was modified by another request (expected version " + studentsCourse.getVersion() + ").");
+            }
+            return;
+        }
+        if (studentsCourse.getVersion() != null) {
+            studentsCourse.setVersion(studentsCourse.getVersion() + 1);
+        }
     }
 }
 /*@Transactionalをメソッドやクラスに付与すると、その範囲内でのデータベース操作がトランザクションとして
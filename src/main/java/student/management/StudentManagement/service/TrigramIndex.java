@@ -0,0 +1,165 @@
+package student.management.StudentManagement.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*部分一致検索のためのトライグラム（連続する３文字）の転置インデックス。
+ * 文書（受講生ID）ごとに複数の文字列を登録する。検索文字列のトライグラムを全て含む文書を候補とし、
+ * 登録した文字列に検索文字列が含まれることを確認してから返す。
+ * ３文字未満の検索文字列はトライグラムで絞り込めないため、登録した文字列を走査する。
+ * 大文字・小文字は区別しない。検索は並行して行え、登録・削除は排他的に行う。*/
+public class TrigramIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    /*トライグラム → そのトライグラムを含む文書IDの集合*/
+    private final Map<String, Set<Integer>> postings = new HashMap<>();
+    /*文書ID → 登録した文字列（正規化済み）*/
+    private final Map<Integer, List<String>> documents = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /*文書の文字列を登録する。既に登録されている場合は置き換える。
+     * @param id 文書ID
+     * @param texts 文字列（nullや空文字は無視する）*/
+    public void put(int id, Collection<String> texts) {
+        List<String> normalized = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            if (text != null && !text.isEmpty()) {
+                normalized.add(normalize(text));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            if (normalized.isEmpty()) {
+                return;
+            }
+            documents.put(id, normalized);
+            for (String text : normalized) {
+                for (String gram : trigrams(text)) {
+                    postings.computeIfAbsent(gram, g -> new HashSet<>()).add(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*文書を削除する*/
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeInternal(int id) {
+        List<String> texts = documents.remove(id);
+        if (texts == null) {
+            return;
+        }
+        for (String text : texts) {
+            for (String gram : trigrams(text)) {
+                Set<Integer> ids = postings.get(gram);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /*検索文字列を部分一致で含む文書のIDを返す。
+     * @param query 検索文字列
+     * @return 文書IDの集合（検索文字列が空の場合は空）*/
+    public Set<Integer> search(String query) {
+        Set<Integer> result = new HashSet<>();
+        if (query == null || query.isEmpty()) {
+            return result;
+        }
+        String normalized = normalize(query);
+
+        lock.readLock().lock();
+        try {
+            if (normalized.codePointCount(0, normalized.length()) < GRAM_LENGTH) {
+                documents.forEach((id, texts) -> {
+                    if (containsIn(texts, normalized)) {
+                        result.add(id);
+                    }
+                });
+                return result;
+            }
+
+            List<Set<Integer>> candidates = new ArrayList<>();
+            for (String gram : trigrams(normalized)) {
+                Set<Integer> ids = postings.get(gram);
+                if (ids == null) {
+                    return result;
+                }
+                candidates.add(ids);
+            }
+            // 最も件数の少ないトライグラムから絞り込む
+            candidates.sort(Comparator.comparingInt(Set::size));
+            for (Integer id : candidates.get(0)) {
+                if (containsInAll(candidates, id) && containsIn(documents.get(id), normalized)) {
+                    result.add(id);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*登録されている文書の件数*/
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean containsInAll(List<Set<Integer>> candidates, Integer id) {
+        for (int i = 1; i < candidates.size(); i++) {
+            if (!candidates.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsIn(List<String> texts, String query) {
+        for (String text : texts) {
+            if (text.contains(query)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /*文字列のトライグラムを返す（サロゲートペアは１文字として扱う）*/
+    static Set<String> trigrams(String text) {
+        int[] codePoints = text.codePoints().toArray();
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= codePoints.length; i++) {
+            grams.add(new String(codePoints, i, GRAM_LENGTH));
+        }
+        return grams;
+    }
+}
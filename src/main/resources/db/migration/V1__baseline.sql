@@ -0,0 +1,30 @@
+-- 受講生管理の初期スキーマ（受講生・受講生コース情報・受講状況）。
+-- 既存のデータベースではspring.flyway.baseline-on-migrateによりこのバージョンを適用済みとして扱う。
+CREATE TABLE IF NOT EXISTS students (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    furigana VARCHAR(255) NOT NULL,
+    nickname VARCHAR(255),
+    email VARCHAR(255) NOT NULL UNIQUE,
+    region VARCHAR(255),
+    age INT,
+    gender VARCHAR(50),
+    remark TEXT,
+    isdeleted BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+CREATE TABLE IF NOT EXISTS students_courses (
+    id INT PRIMARY KEY AUTO_INCREMENT,
+    student_id INT NOT NULL,
+    course_name VARCHAR(100),
+    start_date TIMESTAMP NULL,
+    end_date TIMESTAMP NULL,
+    FOREIGN KEY (student_id) REFERENCES students(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS students_courses_status (
+    id INT PRIMARY KEY AUTO_INCREMENT,
+    students_courses_id INT NOT NULL,
+    status ENUM('仮申込', '本申込', '受講中', '受講終了') NOT NULL,
+    FOREIGN KEY (students_courses_id) REFERENCES students_courses(id) ON DELETE CASCADE
+);
@@ -0,0 +1,12 @@
+-- 受講生コースごとの最新の受講状況（students_courses_statusの射影）。
+-- 受講状況の登録・更新と同じトランザクションで更新し、最新の受講状況を主キーで直接引けるようにする。
+-- 既存の行はLatestCourseStatusBackfill（student.latest-status.backfill-on-startup=true）で移行する。
+CREATE TABLE students_courses_latest_status (
+    students_courses_id INT PRIMARY KEY,
+    status_id INT NOT NULL UNIQUE, -- 最新の受講状況のstudents_courses_status.id
+    status ENUM('仮申込', '本申込', '受講中', '受講終了') NOT NULL,
+    FOREIGN KEY (students_courses_id) REFERENCES students_courses(id) ON DELETE CASCADE
+);
+
+-- 射影の更新時に受講生コースごとの最新の受講状況を索引だけで求めるためのインデックス
+CREATE INDEX idx_students_courses_status_course_id ON students_courses_status (students_courses_id, id);
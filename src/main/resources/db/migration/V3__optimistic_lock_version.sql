@@ -0,0 +1,3 @@
+-- 楽観的ロックのバージョン。受講生・受講生コース情報の更新時に「WHERE id = ? AND version = ?」で競合を検出する
+ALTER TABLE students ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE students_courses ADD COLUMN version INT NOT NULL DEFAULT 0;
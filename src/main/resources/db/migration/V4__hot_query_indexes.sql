@@ -0,0 +1,15 @@
+-- 頻繁に実行される検索条件のインデックス。
+-- 起動時の実行計画の確認（student.query-plan.verify=true）で、これらの検索が全件走査にならないことを確認できる。
+
+-- 削除されていない受講生のID順の走査（一覧のキーセットページング: isdeleted = false AND id > ? ORDER BY id）
+CREATE INDEX idx_students_isdeleted_id ON students (isdeleted, id);
+
+-- 性別検索（LOWER(gender) = LOWER(?) AND isdeleted = 0）。検索条件と同じ式の関数インデックス（MySQL 8.0.13以降）
+CREATE INDEX idx_students_gender_lower ON students ((LOWER(gender)), isdeleted);
+
+-- 受講生ごとのコース情報と最新のコース（student_id IN (...) GROUP BY student_idのMAX(id)）。
+-- 外部キー用に自動作成されたstudent_idのみのインデックスはこのインデックスで代替される
+CREATE INDEX idx_students_courses_student_id_id ON students_courses (student_id, id);
+
+-- コース名検索（LOWER(course_name) = LOWER(?)）
+CREATE INDEX idx_students_courses_course_name_lower ON students_courses ((LOWER(course_name)));
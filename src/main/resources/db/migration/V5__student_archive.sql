@@ -0,0 +1,46 @@
+-- 論理削除した受講生のアーカイブ。
+-- 論理削除した日時（deleted_at）からstudent.archival.retentionが経過した受講生を、コース情報・受講状況の履歴ごと
+-- アーカイブテーブルに移動し、一覧・検索で走査するテーブルから取り除く（StudentArchiveServiceを参照）。
+ALTER TABLE students ADD COLUMN deleted_at TIMESTAMP NULL;
+
+-- 論理削除済みの既存の受講生は、このマイグレーションの適用時点で削除したものとして扱う
+UPDATE students SET deleted_at = CURRENT_TIMESTAMP WHERE isdeleted = TRUE;
+
+-- アーカイブの対象の検索（isdeleted = true AND deleted_at < ? ORDER BY id）
+CREATE INDEX idx_students_isdeleted_deleted_at ON students (isdeleted, deleted_at, id);
+
+-- アーカイブテーブルは元のテーブルと同じ列にアーカイブした日時を加えたもの。
+-- 復元時に同じIDで戻すため、IDは元のテーブルの値をそのまま保持する（外部キー・一意制約は設けない）
+CREATE TABLE students_archive (
+    id INT PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    furigana VARCHAR(255) NOT NULL,
+    nickname VARCHAR(255),
+    email VARCHAR(255) NOT NULL,
+    region VARCHAR(255),
+    age INT,
+    gender VARCHAR(50),
+    remark TEXT,
+    version INT NOT NULL DEFAULT 0,
+    deleted_at TIMESTAMP NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE students_courses_archive (
+    id INT PRIMARY KEY,
+    student_id INT NOT NULL,
+    course_name VARCHAR(100),
+    start_date TIMESTAMP NULL,
+    end_date TIMESTAMP NULL,
+    version INT NOT NULL DEFAULT 0,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_students_courses_archive_student_id ON students_courses_archive (student_id);
+
+CREATE TABLE students_courses_status_archive (
+    id INT PRIMARY KEY,
+    students_courses_id INT NOT NULL,
+    status ENUM('仮申込', '本申込', '受講中', '受講終了') NOT NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_students_courses_status_archive_course_id ON students_courses_status_archive (students_courses_id);
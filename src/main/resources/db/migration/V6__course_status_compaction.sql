@@ -0,0 +1,24 @@
+-- 受講状況の履歴の圧縮（CourseStatusCompactionを参照）。
+-- 受講生コースごとに最新の受講状況と監査期間（student.course-status.compaction.audit-window）内の受講状況を残し、
+-- それより古い受講状況は同じ受講状況が続いた区間ごとに１行にまとめてstudents_courses_status_historyに移す。
+
+-- 受講状況を登録した日時。既存の行はこのマイグレーションの適用時点で登録したものとして扱う
+ALTER TABLE students_courses_status ADD COLUMN created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE students_courses_status_archive ADD COLUMN created_at TIMESTAMP NULL;
+
+-- 圧縮した受講状況の履歴。同じ受講生コースで同じ受講状況が続いた区間（first_status_id〜last_status_id）を１行で表す。
+-- 受講生のアーカイブ・復元で受講生コースIDは変わらないため、外部キーは設けずにそのまま残す
+CREATE TABLE students_courses_status_history (
+    id INT PRIMARY KEY AUTO_INCREMENT,
+    students_courses_id INT NOT NULL,
+    status ENUM('仮申込', '本申込', '受講中', '受講終了') NOT NULL,
+    first_status_id INT NOT NULL, -- 区間の最初のstudents_courses_status.id
+    last_status_id INT NOT NULL,  -- 区間の最後のstudents_courses_status.id
+    transitions INT NOT NULL,     -- 区間にまとめた受講状況の行数
+    first_at TIMESTAMP NOT NULL,
+    last_at TIMESTAMP NOT NULL
+);
+
+-- 受講生コースごとの最後の区間（圧縮時に続きの受講状況をまとめる）
+CREATE INDEX idx_students_courses_status_history_course_last
+    ON students_courses_status_history (students_courses_id, last_status_id);
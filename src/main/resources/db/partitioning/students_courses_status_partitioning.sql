@@ -0,0 +1,28 @@
+-- 受講状況の履歴（students_courses_status）を登録日時（created_at）で月ごとにパーティション分割する（MySQL、任意）。
+-- Flywayでは適用しない。メンテナンス時間に手動で実行し、以降の月のパーティションは
+-- CourseStatusCompaction（student.course-status.compaction.partitioning.enabled=true）が先行して追加する。
+--
+-- MySQLのパーティション分割には次の制約があるため、このスクリプトで合わせて変更する。
+-- ・パーティション分割したテーブルは外部キーを持てない（受講生コースの削除はアプリケーションで受講状況から順に行う）
+-- ・主キーにパーティションキー（created_at）を含める必要がある
+-- パーティション名はp + 年月（pYYYYMM）とし、その月の末日までの行を格納する。pmaxは未来の行の受け皿。
+-- 下の例は2026年10月までを分割する。実行する時点に合わせて範囲を調整すること。
+
+SET @fk = (SELECT CONSTRAINT_NAME FROM information_schema.REFERENTIAL_CONSTRAINTS
+           WHERE CONSTRAINT_SCHEMA = DATABASE() AND TABLE_NAME = 'students_courses_status' LIMIT 1);
+SET @drop_fk = IF(@fk IS NULL, 'SELECT 1', CONCAT('ALTER TABLE students_courses_status DROP FOREIGN KEY ', @fk));
+PREPARE statement FROM @drop_fk;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+ALTER TABLE students_courses_status
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, created_at);
+
+ALTER TABLE students_courses_status
+    PARTITION BY RANGE (UNIX_TIMESTAMP(created_at)) (
+        PARTITION p202608 VALUES LESS THAN (UNIX_TIMESTAMP('2026-09-01 00:00:00')),
+        PARTITION p202609 VALUES LESS THAN (UNIX_TIMESTAMP('2026-10-01 00:00:00')),
+        PARTITION p202610 VALUES LESS THAN (UNIX_TIMESTAMP('2026-11-01 00:00:00')),
+        PARTITION pmax VALUES LESS THAN MAXVALUE
+    );
@@ -0,0 +1,103 @@
+package student.management.StudentManagement.Controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import student.management.StudentManagement.exception.CourseStatusQueueClosedException;
+import student.management.StudentManagement.service.CourseStatusWriteBehind;
+import student.management.StudentManagement.service.StudentService;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*受講生検索（/student?studentId=）の条件付きGETのテスト。
+ * gzip圧縮した本文とそうでない本文は別の表現として、ETagとVaryを確認する。
+ * あわせて、受講状況の書き込み遅延キューが停止処理中の場合の応答を確認する。*/
+class StudentControllerTest {
+
+    private static final String ETAG = "\"v1-1-2-3\"";
+    private static final byte[] JSON = "{\"student\":{\"id\":1}}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GZIPPED = {31, -117, 8, 0};
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        StudentService service = mock(StudentService.class);
+        when(service.getStudentsEtag()).thenReturn(ETAG);
+        when(service.searchStudentJson(1, false)).thenReturn(JSON);
+        when(service.searchStudentJson(1, true)).thenReturn(GZIPPED);
+        mockMvc = MockMvcBuilders.standaloneSetup(new StudentController(service, null, null, null)).build();
+    }
+
+    @Test
+    void gzipAndIdentityBodiesHaveDifferentEtags() throws Exception {
+        MvcResult identity = mockMvc.perform(get("/student").param("studentId", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().bytes(JSON))
+                .andReturn();
+        MvcResult gzip = mockMvc.perform(get("/student").param("studentId", "1")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(content().bytes(GZIPPED))
+                .andReturn();
+
+        assertThat(identity.getResponse().getHeader(HttpHeaders.ETAG)).isEqualTo(ETAG);
+        assertThat(gzip.getResponse().getHeader(HttpHeaders.ETAG)).isEqualTo("\"v1-1-2-3-gzip\"");
+    }
+
+    @Test
+    void notModifiedOnlyForTheEtagOfTheSameCoding() throws Exception {
+        mockMvc.perform(get("/student").param("studentId", "1")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"v1-1-2-3-gzip\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING));
+
+        // 圧縮していない本文のETagでは、gzipを受け付けるリクエストに304を返さない
+        mockMvc.perform(get("/student").param("studentId", "1")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(GZIPPED));
+
+        mockMvc.perform(get("/student").param("studentId", "1")
+                        .header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @Test
+    void courseStatusUpdateWhileTheQueueIsShuttingDownReturns503() throws Exception {
+        CourseStatusWriteBehind writeBehind = mock(CourseStatusWriteBehind.class);
+        when(writeBehind.isEnabled()).thenReturn(true);
+        when(writeBehind.retryAfterSeconds()).thenReturn(1L);
+        doThrow(new CourseStatusQueueClosedException("Course status write-behind queue is shutting down"))
+                .when(writeBehind).submit(1, "受講中");
+        MockMvc courseStatusMvc = MockMvcBuilders.standaloneSetup(
+                new StudentController(mock(StudentService.class), null, writeBehind, null)).build();
+
+        courseStatusMvc.perform(put("/courses/status")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"studentsCoursesId\":1,\"status\":\"受講中\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+}
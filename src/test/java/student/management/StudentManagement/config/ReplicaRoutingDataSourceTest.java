@@ -0,0 +1,184 @@
+package student.management.StudentManagement.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*ReplicaRoutingDataSourceの振り分けのテスト。
+ * プライマリとレプリカをそれぞれ別のインメモリH2にし、nodeテーブルの値でどちらから読んだかを判定する。*/
+class ReplicaRoutingDataSourceTest {
+
+    private static final Duration RETRY_AFTER = Duration.ofMillis(300);
+    private static final Duration READ_YOUR_WRITES_WINDOW = Duration.ofMillis(300);
+
+    private final AtomicBoolean replicaDown = new AtomicBoolean();
+    private SimpleMeterRegistry meterRegistry;
+    private MyBatisConfig.LazyRoutingDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = node("primary");
+        DataSource replica = new DelegatingDataSource(node("replica")) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (replicaDown.get()) {
+                    throw new SQLException("replica is down");
+                }
+                return super.getConnection();
+            }
+        };
+        meterRegistry = new SimpleMeterRegistry();
+        dataSource = new MyBatisConfig.LazyRoutingDataSource(new ReplicaRoutingDataSource(
+                primary, List.of(replica), RETRY_AFTER, READ_YOUR_WRITES_WINDOW, meterRegistry));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadYourWrites.end();
+    }
+
+    /*名前の付いたインメモリH2を作成し、nodeテーブルにその名前を入れる*/
+    private static DataSource node(String name) {
+        DriverManagerDataSource node = new DriverManagerDataSource(
+                "jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(node);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20))");
+        jdbc.update("DELETE FROM node");
+        jdbc.update("INSERT INTO node (name) VALUES (?)", name);
+        return node;
+    }
+
+    private String readNode() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private String readOnlyTransaction() {
+        return readOnly.execute(status -> readNode());
+    }
+
+    private double counter(String name, String target) {
+        return meterRegistry.get(name).tag("target", target).counter().count();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplicaAndEverythingElseToThePrimary() {
+        assertThat(readOnlyTransaction()).isEqualTo("replica");
+        assertThat(readWrite.<String>execute(status -> readNode())).isEqualTo("primary");
+        assertThat(readNode()).isEqualTo("primary");
+
+        assertThat(counter("db.routing.connections", "replica-0")).isEqualTo(1);
+    }
+
+    @Test
+    void unavailableReplicaFallsBackToThePrimaryUntilRetryAfter() throws InterruptedException {
+        replicaDown.set(true);
+        assertThat(readOnlyTransaction()).isEqualTo("primary");
+        assertThat(meterRegistry.get("db.replica.failures").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("db.replica.healthy").gauge().value()).isZero();
+
+        // retry-afterの間は、レプリカが復旧していても接続を試みない
+        replicaDown.set(false);
+        assertThat(readOnlyTransaction()).isEqualTo("primary");
+        assertThat(meterRegistry.get("db.replica.failures").counter().count()).isEqualTo(1);
+
+        Thread.sleep(RETRY_AFTER.toMillis() + 50);
+        assertThat(meterRegistry.get("db.replica.healthy").gauge().value()).isEqualTo(1);
+        assertThat(readOnlyTransaction()).isEqualTo("replica");
+    }
+
+    @Test
+    void committedWritePinsTheClientToThePrimaryForTheWindow() throws InterruptedException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ReadYourWrites.begin(response, 0);
+        readWrite.executeWithoutResult(status -> jdbcTemplate.update("UPDATE node SET name = name"));
+
+        // 同じリクエストの書き込み後の読み取り
+        assertThat(readOnlyTransaction()).isEqualTo("primary");
+        Cookie cookie = response.getCookie(ReadYourWrites.PRIMARY_UNTIL_COOKIE);
+        assertThat(cookie).isNotNull();
+        ReadYourWrites.end();
+
+        // クッキーを送った次のリクエストの読み取り
+        ReadYourWrites.begin(new MockHttpServletResponse(), Long.parseLong(cookie.getValue()));
+        assertThat(readOnlyTransaction()).isEqualTo("primary");
+
+        Thread.sleep(READ_YOUR_WRITES_WINDOW.toMillis() + 50);
+        assertThat(readOnlyTransaction()).isEqualTo("replica");
+    }
+
+    @Test
+    void rolledBackWriteDoesNotPinTheClient() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ReadYourWrites.begin(response, 0);
+        readWrite.executeWithoutResult(status -> {
+            readNode();
+            status.setRollbackOnly();
+        });
+
+        assertThat(response.getCookie(ReadYourWrites.PRIMARY_UNTIL_COOKIE)).isNull();
+        assertThat(readOnlyTransaction()).isEqualTo("replica");
+    }
+
+    @Test
+    void readsForCachesAndEtagsGoToThePrimaryEvenWhenTheReplicaLags() {
+        // 別のクライアントの書き込みがまだレプリカに反映されていない
+        new JdbcTemplate(node("primary")).update("UPDATE node SET name = 'primary-updated'");
+
+        assertThat(readOnlyTransaction()).isEqualTo("replica");
+        assertThat(ReadYourWrites.onPrimary(this::readOnlyTransaction)).isEqualTo("primary-updated");
+        // トランザクションを開始した後、最初のSQLの前に固定した場合もプライマリで読む
+        assertThat(readOnly.<String>execute(status -> ReadYourWrites.onPrimary(this::readNode))).isEqualTo("primary-updated");
+        // onPrimaryを抜けた後はレプリカに戻る
+        assertThat(readOnlyTransaction()).isEqualTo("replica");
+    }
+
+    @Test
+    void primaryUntilCookieIsClampedToTheReadYourWritesWindow() throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(READ_YOUR_WRITES_WINDOW);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/studentList");
+        request.setCookies(new Cookie(ReadYourWrites.PRIMARY_UNTIL_COOKIE, Long.toString(Long.MAX_VALUE)));
+        AtomicReference<String> pinned = new AtomicReference<>();
+        AtomicReference<String> afterWindow = new AtomicReference<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            pinned.set(readOnlyTransaction());
+            try {
+                Thread.sleep(READ_YOUR_WRITES_WINDOW.toMillis() + 50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            afterWindow.set(readOnlyTransaction());
+        });
+
+        assertThat(pinned.get()).isEqualTo("primary");
+        // 遠い将来の期限を送っても、read-your-writes-windowを過ぎればレプリカから読む
+        assertThat(afterWindow.get()).isEqualTo("replica");
+    }
+}
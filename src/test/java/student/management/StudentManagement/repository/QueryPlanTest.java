@@ -0,0 +1,201 @@
+package student.management.StudentManagement.repository;
+
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.ParamNameResolver;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.test.context.jdbc.Sql;
+import student.management.StudentManagement.domain.StudentFields;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*StudentRepositoryの全ての検索（SELECT）をサンプルの引数でEXPLAINし、
+ * 頻繁に実行される検索（HOT_STATEMENTS）が全件走査になっていないことを確認する。
+ * query-plan-seed.sqlで件数を増やしたH2（MySQL互換モード）で実行する。H2の実行計画では、
+ * テーブルをインデックスなしで読む箇所が「.tableScan」と表示される。*/
+@MybatisTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class QueryPlanTest {
+
+    /*頻繁に実行され、全件走査になってはいけない検索（StudentRepositoryのメソッド名）*/
+    static final Set<String> HOT_STATEMENTS = Set.of(
+            "findStudentById",
+            "findStudentsAfter",
+            "findStudentsByIds",
+            "findStudentByGender",
+            "findStudentsByCourseName",
+            "getStudentCourses",
+            "getLatestCourseStatus",
+            "findLatestStudentCoursesByStudentIds",
+            "findLatestCourseStatusesByStudentIds",
+            "findStudentCoursesByStudentIds",
+            "findStudentStatsRows",
+            "findStudentIdByStudentsCoursesId",
+            "findStudentVersion",
+            "findStudentsCourseVersion");
+
+    /*MySQLでは関数インデックス（V4__hot_query_indexes.sql）を使用する検索。
+     * H2は関数インデックスに対応していないため実行計画は確認できない。代わりに、検索条件と同じ式の
+     * インデックスがマイグレーションに定義されていることを確認する（メソッド名とインデックスの定義）*/
+    static final Map<String, String> FUNCTIONAL_INDEX_STATEMENTS = Map.of(
+            "findStudentByGender", "ON students ((LOWER(gender)), isdeleted)",
+            "findStudentsByCourseName", "ON students_courses ((LOWER(course_name)))");
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    @Sql("/query-plan-seed.sql")
+    void hotStatementsDoNotFallBackToFullScan() throws SQLException {
+        List<QueryPlan> plans = explainAll();
+
+        assertThat(plans).extracting(QueryPlan::statement).containsAll(HOT_STATEMENTS);
+        List<QueryPlan> violations = plans.stream()
+                .filter(plan -> HOT_STATEMENTS.contains(plan.statement()))
+                .filter(plan -> !FUNCTIONAL_INDEX_STATEMENTS.containsKey(plan.statement()))
+                .filter(plan -> plan.error() != null || plan.fullScan())
+                .toList();
+        assertThat(violations).as("hot statements with a full scan or without a plan").isEmpty();
+    }
+
+    @Test
+    void functionalIndexesForCaseInsensitiveSearchesAreMigrated() throws IOException {
+        String migration;
+        try (InputStream in = getClass().getResourceAsStream("/db/migration/V4__hot_query_indexes.sql")) {
+            assertThat(in).isNotNull();
+            migration = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        for (Map.Entry<String, String> entry : FUNCTIONAL_INDEX_STATEMENTS.entrySet()) {
+            assertThat(migration).as("functional index for %s", entry.getKey()).contains(entry.getValue());
+        }
+    }
+
+    /*StudentRepositoryの全ての検索の実行計画を取得する（ステートメント名の順）*/
+    private List<QueryPlan> explainAll() throws SQLException {
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        List<QueryPlan> plans = new ArrayList<>();
+
+        // シードデータを登録したテストのトランザクションと同じ接続で実行する
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            for (Method method : StudentRepository.class.getMethods()) {
+                String statementId = StudentRepository.class.getName() + "." + method.getName();
+                if (!configuration.hasStatement(statementId, false)) {
+                    continue;
+                }
+                MappedStatement mappedStatement = configuration.getMappedStatement(statementId, false);
+                if (mappedStatement.getSqlCommandType() != SqlCommandType.SELECT) {
+                    continue;
+                }
+                plans.add(explain(connection, configuration, mappedStatement, method));
+            }
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+
+        plans.sort(Comparator.comparing(QueryPlan::statement));
+        return plans;
+    }
+
+    private QueryPlan explain(Connection connection, Configuration configuration,
+                              MappedStatement mappedStatement, Method method) {
+        Object[] args = new Object[method.getParameterCount()];
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            args[i] = sampleArgument(parameters[i]);
+        }
+
+        try {
+            Object parameterObject = new ParamNameResolver(configuration, method).getNamedParams(args);
+            BoundSql boundSql = mappedStatement.getBoundSql(parameterObject);
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + boundSql.getSql())) {
+                new DefaultParameterHandler(mappedStatement, parameterObject, boundSql).setParameters(statement);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    StringBuilder plan = new StringBuilder();
+                    while (resultSet.next()) {
+                        plan.append(resultSet.getString(1));
+                    }
+                    String text = plan.toString().replaceAll("\\s+", " ");
+                    return new QueryPlan(method.getName(), text.contains(".tableScan"), text, null);
+                }
+            }
+        } catch (Exception e) {
+            return new QueryPlan(method.getName(), false, null, e.getMessage());
+        }
+    }
+
+    /*引数の型と名前からEXPLAIN用のサンプルの値を作成する*/
+    private static Object sampleArgument(Parameter parameter) {
+        Param param = parameter.getAnnotation(Param.class);
+        String name = param != null ? param.value() : parameter.getName();
+        Class<?> type = parameter.getType();
+
+        if (type == Integer.class || type == int.class) {
+            return name.toLowerCase().contains("limit") ? 100 : 1;
+        } else if (type == Long.class || type == long.class) {
+            return 1L;
+        } else if (type == Boolean.class || type == boolean.class) {
+            return false;
+        } else if (type == String.class) {
+            return switch (name) {
+                case "gender" -> "Female";
+                case "status" -> "受講中";
+                case "cursor", "after" -> null;
+                default -> "JAVA";
+            };
+        } else if (List.class.isAssignableFrom(type)) {
+            return List.of(1, 2, 3);
+        } else if (type == LocalDate.class) {
+            return LocalDate.now();
+        } else if (type == LocalDateTime.class) {
+            return LocalDateTime.now();
+        } else if (type == StudentFields.class) {
+            return StudentFields.ALL;
+        }
+        return null;
+    }
+
+    /*検索１件分の実行計画。
+     * @param statement StudentRepositoryのメソッド名
+     * @param fullScan 全件走査を含む場合はtrue
+     * @param plan 実行計画
+     * @param error EXPLAINに失敗した場合のメッセージ*/
+    record QueryPlan(String statement, boolean fullScan, String plan, String error) {
+
+        @Override
+        public String toString() {
+            return statement + ": " + (error != null ? error : plan);
+        }
+    }
+}
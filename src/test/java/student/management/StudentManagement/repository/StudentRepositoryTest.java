@@ -0,0 +1,108 @@
+package student.management.StudentManagement.repository;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import student.management.StudentManagement.data.CourseStatusDTO;
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.data.StudentsCourse;
+import student.management.StudentManagement.domain.StudentDetail;
+
+import java.sql.Connection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/*StudentRepositoryのテスト。application.propertiesのH2（MySQL互換モード）をschema.sql・data.sqlで作成して実行する*/
+@MybatisTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class StudentRepositoryTest {
+
+    @Autowired
+    private StudentRepository repository;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    private StatementCounter statementCounter;
+
+    @BeforeEach
+    void setUp() {
+        statementCounter = sqlSessionFactory.getConfiguration().getInterceptors().stream()
+                .filter(StatementCounter.class::isInstance)
+                .map(StatementCounter.class::cast)
+                .findFirst()
+                .orElseGet(() -> {
+                    StatementCounter counter = new StatementCounter();
+                    sqlSessionFactory.getConfiguration().addInterceptor(counter);
+                    return counter;
+                });
+        statementCounter.count = 0;
+    }
+
+    /*受講生一覧は受講生・全てのコース情報・最新の受講状況を１回の問い合わせで組み立てる*/
+    @Test
+    void getStudentListRunsOneStatement() {
+        List<StudentDetail> studentList = repository.getStudentList();
+
+        assertThat(statementCounter.count).isEqualTo(1);
+        assertThat(studentList).extracting(detail -> detail.getStudent().getId()).containsExactly(1, 2);
+
+        StudentDetail first = studentList.get(0);
+        assertThat(first.getStudent().getStudentName()).isEqualTo("A");
+        assertThat(first.getStudentCourseList()).extracting(StudentsCourse::getCourseName).containsExactly("Python");
+        assertThat(first.getCourseStatuses()).extracting(CourseStatusDTO::getStatus).containsExactly("受講中");
+
+        StudentDetail second = studentList.get(1);
+        assertThat(second.getStudentCourseList()).extracting(StudentsCourse::getId).containsExactly(2, 3);
+        assertThat(second.getStudentCourseList()).allSatisfy(course -> assertThat(course.getStudentId()).isEqualTo(2));
+        assertThat(second.getCourseStatuses())
+                .extracting(CourseStatusDTO::getStudentsCoursesId, CourseStatusDTO::getCourseName, CourseStatusDTO::getStatus)
+                .containsExactly(
+                        tuple(2, "JAVA", "本申込"),
+                        tuple(3, "AWS", "仮申込"));
+    }
+
+    /*受講生詳細も１回の問い合わせで組み立て、コースのない受講生は空のリストになる*/
+    @Test
+    void getStudentDetailsRunsOneStatement() {
+        StudentDetail detail = repository.getStudentDetails(2);
+
+        assertThat(statementCounter.count).isEqualTo(1);
+        assertThat(detail.getStudent().getEmail()).isEqualTo("b@example.com");
+        assertThat(detail.getStudentCourseList()).extracting(StudentsCourse::getCourseName).containsExactly("JAVA", "AWS");
+        assertThat(detail.getCourseStatuses()).extracting(CourseStatusDTO::getStatus).containsExactly("本申込", "仮申込");
+
+        Student student = new Student(null, "C", "シ", "C", "c@example.com", "Nagoya", 30, "Other");
+        repository.registerStudent(student);
+        statementCounter.count = 0;
+        StudentDetail withoutCourses = repository.getStudentDetails(student.getId());
+
+        assertThat(statementCounter.count).isEqualTo(1);
+        assertThat(withoutCourses.getStudent().getStudentName()).isEqualTo("C");
+        assertThat(withoutCourses.getStudentCourseList()).isEmpty();
+        assertThat(withoutCourses.getCourseStatuses()).isEmpty();
+    }
+
+    /*JDBCのステートメントの作成回数を数える（ネストしたselectも含む）*/
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+    static class StatementCounter implements Interceptor {
+
+        private int count;
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            count++;
+            return invocation.proceed();
+        }
+    }
+}
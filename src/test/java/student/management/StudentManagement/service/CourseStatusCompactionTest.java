@@ -0,0 +1,129 @@
+package student.management.StudentManagement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import student.management.StudentManagement.repository.StudentRepository;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*CourseStatusCompaction（受講状況の履歴の圧縮）のテスト。
+ * 圧縮はチャンクごとに別のトランザクションでコミットするため、テストのトランザクションは使わず、
+ * 終了後にschema.sql・data.sqlでデータベースを作り直す。*/
+@MybatisTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql(scripts = {"classpath:schema.sql", "classpath:data.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class CourseStatusCompactionTest {
+
+    private static final Duration AUDIT_WINDOW = Duration.ofDays(90);
+
+    @Autowired
+    private StudentRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+    private CourseStatusCompaction compaction;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // チャンクを複数に分けるため、chunk-sizeは受講生コース２件にする
+        compaction = new CourseStatusCompaction(repository, transactionManager, dataSource, new SimpleMeterRegistry(),
+                true, AUDIT_WINDOW, 2, false, 3);
+
+        // 受講生コース1：仮申込 → 受講中 → 受講中（ここまで監査期間外） → 受講中 → 本申込（監査期間内）
+        setCreatedAt(1, 200);
+        setCreatedAt(2, 190);
+        insertStatus(5, 1, "受講中", 180);
+        insertStatus(6, 1, "受講中", 10);
+        insertStatus(7, 1, "本申込", 5);
+        // 受講生コース2・3：監査期間外の最新の受講状況のみ
+        setCreatedAt(3, 200);
+        setCreatedAt(4, 200);
+    }
+
+    private void setCreatedAt(int statusId, int daysAgo) {
+        jdbcTemplate.update("UPDATE students_courses_status SET created_at = ? WHERE id = ?", daysAgo(daysAgo), statusId);
+    }
+
+    private void insertStatus(int statusId, int studentsCoursesId, String status, int daysAgo) {
+        jdbcTemplate.update("INSERT INTO students_courses_status (id, students_courses_id, status, created_at) VALUES (?, ?, ?, ?)",
+                statusId, studentsCoursesId, status, daysAgo(daysAgo));
+    }
+
+    private static Timestamp daysAgo(int days) {
+        return Timestamp.valueOf(LocalDateTime.now().minusDays(days));
+    }
+
+    private List<Integer> remainingStatusIds() {
+        return jdbcTemplate.queryForList("SELECT id FROM students_courses_status ORDER BY id", Integer.class);
+    }
+
+    /*圧縮した履歴（受講生コースID・受講状況・最初と最後の受講状況ID・件数）*/
+    private List<List<Object>> runs() {
+        return jdbcTemplate.queryForList("""
+                        SELECT students_courses_id, status, first_status_id, last_status_id, transitions
+                        FROM students_courses_status_history ORDER BY students_courses_id, first_status_id
+                        """).stream()
+                .map(row -> List.copyOf(row.values()))
+                .toList();
+    }
+
+    @Test
+    void latestAndInWindowStatusesAreKeptAndOlderOnesAreRolledIntoRuns() {
+        assertThat(compaction.compact()).isEqualTo(3);
+
+        // 監査期間内の受講状況と、監査期間外でも最新の受講状況（受講生コース2・3）は残す
+        assertThat(remainingStatusIds()).containsExactly(3, 4, 6, 7);
+        // 同じ受講状況が続いた区間は１行にまとめる
+        assertThat(runs()).containsExactly(
+                List.of(1, "仮申込", 1, 1, 1),
+                List.of(1, "受講中", 2, 5, 2));
+    }
+
+    @Test
+    void laterCompactionExtendsTheLastRunOfTheSameStatus() {
+        compaction.compact();
+
+        // 受講状況6が監査期間外になった
+        setCreatedAt(6, 100);
+        assertThat(compaction.compact()).isEqualTo(1);
+
+        assertThat(remainingStatusIds()).containsExactly(3, 4, 7);
+        assertThat(runs()).containsExactly(
+                List.of(1, "仮申込", 1, 1, 1),
+                List.of(1, "受講中", 2, 6, 3));
+    }
+
+    @Test
+    void compactingAgainChangesNothing() {
+        compaction.compact();
+        List<Integer> statusIds = remainingStatusIds();
+        List<List<Object>> runs = runs();
+
+        assertThat(compaction.compact()).isZero();
+
+        assertThat(remainingStatusIds()).isEqualTo(statusIds);
+        assertThat(runs()).isEqualTo(runs);
+    }
+}
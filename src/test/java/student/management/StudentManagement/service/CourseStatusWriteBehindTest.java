@@ -0,0 +1,151 @@
+package student.management.StudentManagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import student.management.StudentManagement.exception.CourseStatusQueueClosedException;
+import student.management.StudentManagement.exception.CourseStatusQueueFullException;
+import student.management.StudentManagement.repository.StudentRepository;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/*CourseStatusWriteBehind（受講状況の書き込み遅延キュー）のテスト。
+ * 反映はキュー専用のトランザクションでコミットするため、テストのトランザクションは使わず、
+ * 終了後にschema.sql・data.sqlでデータベースを作り直す。*/
+@MybatisTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql(scripts = {"classpath:schema.sql", "classpath:data.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class CourseStatusWriteBehindTest {
+
+    private static final Duration OFFER_TIMEOUT = Duration.ofMillis(100);
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private StudentRepository repository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    /*flush-intervalを長くし、close()またはbatch-size件たまるまで反映しないキューを作成する*/
+    private CourseStatusWriteBehind writeBehind(int capacity, int maxAttempts) {
+        return new CourseStatusWriteBehind(sqlSessionFactory, transactionManager, new EnrollmentStatistics(repository),
+                new ChangeVersions(),
+                new StudentDetailCache(new ObjectMapper().findAndRegisterModules(), 100, 100, Duration.ofMinutes(5)),
+                meterRegistry, true, capacity, 100, Duration.ofHours(1), OFFER_TIMEOUT, maxAttempts);
+    }
+
+    private String latestStatus(int studentsCoursesId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT status FROM students_courses_latest_status WHERE students_courses_id = ?",
+                String.class, studentsCoursesId);
+    }
+
+    /*data.sqlで登録した受講状況（ID 1〜4）より後に追加された受講状況の件数*/
+    private int addedStatusRows(int studentsCoursesId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM students_courses_status WHERE students_courses_id = ? AND id > 4",
+                Integer.class, studentsCoursesId);
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    @Test
+    void laterUpdateForTheSameCourseReplacesThePendingOne() throws InterruptedException {
+        CourseStatusWriteBehind queue = writeBehind(10, 3);
+        queue.submit(1, "本申込");
+        queue.submit(1, "受講終了");
+
+        queue.close();
+
+        assertThat(latestStatus(1)).isEqualTo("受講終了");
+        // 途中の受講状況は履歴に残らない
+        assertThat(addedStatusRows(1)).isEqualTo(1);
+        assertThat(counter("course.status.queue.submitted")).isEqualTo(1);
+        assertThat(counter("course.status.queue.coalesced")).isEqualTo(1);
+    }
+
+    @Test
+    void submitToAFullQueueFailsAfterTheOfferTimeout() throws InterruptedException {
+        CourseStatusWriteBehind queue = writeBehind(1, 3);
+        queue.submit(1, "本申込");
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> queue.submit(2, "受講中"))
+                .isInstanceOf(CourseStatusQueueFullException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(OFFER_TIMEOUT);
+        assertThat(counter("course.status.queue.rejected")).isEqualTo(1);
+
+        // 未反映の受講生コースへの更新は、満杯でも置き換えられる
+        queue.submit(1, "受講中");
+        queue.close();
+        assertThat(latestStatus(1)).isEqualTo("受講中");
+        assertThat(latestStatus(2)).isEqualTo("本申込");
+    }
+
+    @Test
+    void failingUpdateIsDroppedAfterMaxAttemptsAndTheRestOfTheBatchIsWritten() throws InterruptedException {
+        CourseStatusWriteBehind queue = writeBehind(10, 2);
+        queue.submit(1, "本申込");
+        // 存在しない受講生コースへの更新は外部キー制約で失敗し続ける
+        queue.submit(999, "受講中");
+        queue.submit(2, "受講中");
+
+        queue.close();
+
+        assertThat(latestStatus(1)).isEqualTo("本申込");
+        assertThat(latestStatus(2)).isEqualTo("受講中");
+        assertThat(addedStatusRows(999)).isZero();
+        assertThat(counter("course.status.queue.flushed")).isEqualTo(2);
+        assertThat(counter("course.status.queue.failed")).isEqualTo(1);
+    }
+
+    @Test
+    void closeWritesEverythingStillPendingAndRejectsLaterUpdates() throws InterruptedException {
+        CourseStatusWriteBehind queue = writeBehind(10, 3);
+        queue.start();
+        queue.submit(1, "受講終了");
+        queue.submit(2, "受講中");
+        queue.submit(3, "本申込");
+        // flush-intervalもbatch-sizeにも達していないため、まだ反映されていない
+        assertThat(List.of(latestStatus(1), latestStatus(2), latestStatus(3))).containsExactly("受講中", "本申込", "仮申込");
+
+        queue.close();
+
+        assertThat(List.of(latestStatus(1), latestStatus(2), latestStatus(3))).containsExactly("受講終了", "受講中", "本申込");
+        assertThat(meterRegistry.get("course.status.queue.pending").gauge().value()).isZero();
+        assertThatThrownBy(() -> queue.submit(1, "仮申込"))
+                .isInstanceOf(CourseStatusQueueClosedException.class);
+    }
+}
@@ -0,0 +1,212 @@
+package student.management.StudentManagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.exception.StudentApiException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/*StudentApiClientのテスト。JDKのHttpServerで受講生一覧APIのスタブを立て、そこに接続する。*/
+class StudentApiClientTest {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMillis(500);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private HttpServer server;
+    private StudentApiClient client;
+
+    /*スタブが返すレスポンス*/
+    private volatile StubHandler handler;
+
+    @FunctionalInterface
+    private interface StubHandler {
+        void handle(HttpExchange exchange) throws Exception;
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/studentList", exchange -> {
+            try {
+                handler.handle(exchange);
+            } catch (Exception e) {
+                // タイムアウトしたクライアントが切断した場合など
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        client = newClient(URI.create("http://localhost:" + server.getAddress().getPort() + "/studentList"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private StudentApiClient newClient(URI uri) {
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        return new StudentApiClient(httpClient, objectMapper, uri, REQUEST_TIMEOUT);
+    }
+
+    private static String student(int id, String name) {
+        return "{\"id\":" + id + ",\"studentName\":\"" + name + "\",\"region\":\"東京\",\"unknownField\":1}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    @Test
+    void fetchStudentsReadsAnArrayAndIgnoresUnknownProperties() {
+        handler = exchange -> {
+            assertThat(exchange.getRequestHeaders().getFirst("Accept")).isEqualTo("application/json");
+            respond(exchange, 200, "[" + student(1, "山田") + "," + student(2, "佐藤") + "]");
+        };
+
+        List<Student> students = client.fetchStudents();
+
+        assertThat(students).extracting(Student::getId).containsExactly(1, 2);
+        assertThat(students).extracting(Student::getStudentName).containsExactly("山田", "佐藤");
+        assertThat(students.get(0).getRegion()).isEqualTo("東京");
+    }
+
+    @Test
+    void fetchStudentsAcceptsASingleObjectAndAnEmptyBody() {
+        handler = exchange -> respond(exchange, 200, student(1, "山田"));
+        assertThat(client.fetchStudents()).extracting(Student::getId).containsExactly(1);
+
+        handler = exchange -> respond(exchange, 200, "");
+        assertThat(client.fetchStudents()).isEmpty();
+
+        handler = exchange -> respond(exchange, 200, "[]");
+        assertThat(client.fetchStudents()).isEmpty();
+    }
+
+    @Test
+    void forEachStudentStreamsStudentsBeforeTheResponseIsComplete() {
+        CountDownLatch firstReceived = new CountDownLatch(1);
+        AtomicBoolean streamed = new AtomicBoolean();
+        handler = exchange -> {
+            exchange.sendResponseHeaders(200, 0); // チャンク形式で少しずつ送る
+            OutputStream body = exchange.getResponseBody();
+            body.write(("[" + student(1, "山田") + ",").getBytes(StandardCharsets.UTF_8));
+            body.flush();
+            // 残りを送る前に、クライアントが１件目を読み出したことを確認する
+            streamed.set(firstReceived.await(5, TimeUnit.SECONDS));
+            body.write((student(2, "佐藤") + "]").getBytes(StandardCharsets.UTF_8));
+        };
+
+        List<Integer> ids = new ArrayList<>();
+        client.forEachStudent(student -> {
+            ids.add(student.getId());
+            firstReceived.countDown();
+        });
+
+        assertThat(ids).containsExactly(1, 2);
+        assertThat(streamed).isTrue();
+    }
+
+    @Test
+    void nonSuccessStatusIsReportedAsStudentApiException() {
+        handler = exchange -> respond(exchange, 503, "{\"error\":\"unavailable\"}");
+
+        assertThatThrownBy(client::fetchStudents)
+                .isInstanceOf(StudentApiException.class)
+                .hasMessageContaining("Unexpected status 503");
+    }
+
+    @Test
+    void malformedJsonIsReportedAsStudentApiException() {
+        handler = exchange -> respond(exchange, 200, "[" + student(1, "山田") + ",{\"id\":");
+        assertThatThrownBy(client::fetchStudents)
+                .isInstanceOf(StudentApiException.class)
+                .hasMessageContaining("Failed to read students");
+
+        handler = exchange -> respond(exchange, 200, "\"students\"");
+        assertThatThrownBy(client::fetchStudents)
+                .isInstanceOf(StudentApiException.class)
+                .hasMessageContaining("Unexpected JSON token");
+    }
+
+    @Test
+    void requestTimeoutIsReportedAsStudentApiException() {
+        CountDownLatch release = new CountDownLatch(1);
+        handler = exchange -> {
+            release.await(5, TimeUnit.SECONDS);
+            respond(exchange, 200, "[]");
+        };
+
+        try {
+            assertThatThrownBy(client::fetchStudents)
+                    .isInstanceOf(StudentApiException.class)
+                    .hasCauseInstanceOf(HttpTimeoutException.class);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void connectionFailureIsReportedAsStudentApiException() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        StudentApiClient unreachable = newClient(URI.create("http://localhost:" + closedPort + "/studentList"));
+
+        assertThatThrownBy(unreachable::fetchStudents)
+                .isInstanceOf(StudentApiException.class)
+                .hasMessageContaining("Failed to call")
+                .hasCauseInstanceOf(IOException.class);
+    }
+
+    @Test
+    void fetchStudentsAsyncCompletesWithStudentsOrStudentApiException() {
+        handler = exchange -> respond(exchange, 200, "[" + student(1, "山田") + "]");
+        assertThat(client.fetchStudentsAsync().join()).extracting(Student::getId).containsExactly(1);
+
+        handler = exchange -> respond(exchange, 500, "");
+        assertThatThrownBy(() -> client.fetchStudentsAsync().join())
+                .isInstanceOf(CompletionException.class)
+                .cause()
+                .isInstanceOf(StudentApiException.class)
+                .hasMessageContaining("Unexpected status 500");
+    }
+
+    @Test
+    void serviceLetsStudentApiExceptionPropagate() {
+        handler = exchange -> respond(exchange, 502, "");
+        StudentService service = new StudentService(null, null, null, objectMapper, null, null, null, client, null);
+
+        assertThatThrownBy(service::fetchStudentsFromApi)
+                .isInstanceOf(StudentApiException.class)
+                .hasMessageContaining("Unexpected status 502");
+    }
+}
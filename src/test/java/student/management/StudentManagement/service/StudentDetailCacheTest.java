@@ -0,0 +1,64 @@
+package student.management.StudentManagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.domain.StudentDetail;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*StudentDetailCacheの受講生一覧のJSON（getJsonArray）のテスト*/
+class StudentDetailCacheTest {
+
+    private final StudentDetailCache cache = new StudentDetailCache(
+            new ObjectMapper().findAndRegisterModules(), 100, 100, Duration.ofMinutes(5));
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<List<Student>, List<StudentDetail>> bulkLoader = students -> {
+        loads.incrementAndGet();
+        return students.stream().map(student -> new StudentDetail(student, List.of(), List.of())).toList();
+    };
+
+    private static Student student(int id, String name) {
+        Student student = new Student();
+        student.setId(id);
+        student.setStudentName(name);
+        return student;
+    }
+
+    private static String json(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void cachedFragmentsAreReusedForLaterLists() {
+        long stamp = cache.invalidationStamp();
+        cache.getJsonArray(List.of(student(1, "山田"), student(2, "佐藤")), bulkLoader, stamp);
+
+        String json = json(cache.getJsonArray(List.of(student(1, "別名"), student(2, "別名")), bulkLoader,
+                cache.invalidationStamp()));
+
+        assertThat(loads).hasValue(1);
+        assertThat(json).contains("山田", "佐藤").doesNotContain("別名");
+    }
+
+    @Test
+    void studentsReadBeforeAnInvalidationAreNotCached() {
+        // 受講生一覧を読み込んだ後、JSONを作成する前に受講生1の更新がコミットされた
+        long stamp = cache.invalidationStamp();
+        List<Student> staleStudents = List.of(student(1, "更新前"));
+        cache.invalidate(1);
+
+        assertThat(json(cache.getJsonArray(staleStudents, bulkLoader, stamp))).contains("更新前");
+
+        // 古い内容はキャッシュに残らず、次の一覧では読み直した内容を返す
+        String json = json(cache.getJsonArray(List.of(student(1, "更新後")), bulkLoader, cache.invalidationStamp()));
+        assertThat(json).contains("更新後").doesNotContain("更新前");
+        assertThat(loads).hasValue(2);
+    }
+}
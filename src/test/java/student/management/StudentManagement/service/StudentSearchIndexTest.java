@@ -0,0 +1,82 @@
+package student.management.StudentManagement.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import student.management.StudentManagement.data.Student;
+import student.management.StudentManagement.repository.StudentRepository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*StudentSearchIndexの読み直し（refresh）のテスト。データベースはモックにし、読み込み結果と順序を制御する。*/
+class StudentSearchIndexTest {
+
+    private StudentRepository repository;
+    private StudentSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(StudentRepository.class);
+        when(repository.findStudentsAfter(anyInt(), anyInt())).thenReturn(List.of());
+        when(repository.findStudentCoursesByStudentIds(anyList())).thenReturn(List.of());
+        index = new StudentSearchIndex(repository, true);
+        index.build();
+    }
+
+    private static Student student(int id, String name) {
+        Student student = new Student();
+        student.setId(id);
+        student.setStudentName(name);
+        student.setFurigana("フリガナ");
+        student.setNickname("nick");
+        return student;
+    }
+
+    @Test
+    void refreshIndexesAndRemovesStudents() {
+        when(repository.findStudentsByIds(List.of(1))).thenReturn(List.of(student(1, "山田太郎")));
+        index.refresh(List.of(1));
+        assertThat(index.search("山田太郎", null)).containsExactly(1);
+
+        // 論理削除された受講生は見つからないため、インデックスから除く
+        when(repository.findStudentsByIds(List.of(1))).thenReturn(List.of());
+        index.refresh(List.of(1));
+        assertThat(index.search("山田太郎", null)).isEmpty();
+        assertThat(index.suggest("ふりがな", 10)).isEmpty();
+    }
+
+    @Test
+    void olderReloadFinishingLastDoesNotOverwriteNewerOne() throws Exception {
+        CountDownLatch firstReadStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstRead = new CountDownLatch(1);
+        AtomicInteger reads = new AtomicInteger();
+        when(repository.findStudentsByIds(List.of(1))).thenAnswer(invocation -> {
+            if (reads.incrementAndGet() == 1) {
+                // １回目のコミット後の読み直し：更新前の名前を読んだところで止める
+                firstReadStarted.countDown();
+                releaseFirstRead.await(5, TimeUnit.SECONDS);
+                return List.of(student(1, "更新前の名前"));
+            }
+            return List.of(student(1, "更新後の名前"));
+        });
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> index.refresh(List.of(1)));
+        assertThat(firstReadStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        // ２回目のコミット後の読み直しが先に完了する
+        index.refresh(List.of(1));
+        releaseFirstRead.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        assertThat(index.search("更新後の名前", null)).containsExactly(1);
+        assertThat(index.search("更新前の名前", null)).isEmpty();
+    }
+}
@@ -1,3 +1,6 @@
+DELETE FROM students_courses_status_history;
+DELETE FROM students_courses_latest_status;
+DELETE FROM students_courses_status;
 DELETE FROM students_courses;
 DELETE FROM students;
 -- studentsテーブルにデータを挿入
@@ -10,4 +13,24 @@ VALUES
 INSERT INTO students_courses (id, student_id, course_name, start_date, end_date) 
 VALUES 
 (1, 1, 'Python', '2024-11-10 00:00:00', '2025-11-09 00:00:00'),
-(2, 2, 'JAVA', '2024-11-10 00:00:00', '2025-11-09 00:00:00');
+(2, 2, 'JAVA', '2024-11-10 00:00:00', '2025-11-09 00:00:00'),
+(3, 2, 'AWS', '2024-12-01 00:00:00', '2025-11-30 00:00:00');
+
+-- students_courses_statusテーブル（受講状況の履歴）と最新の受講状況の射影にデータを挿入
+INSERT INTO students_courses_status (id, students_courses_id, status)
+VALUES
+(1, 1, '仮申込'),
+(2, 1, '受講中'),
+(3, 2, '本申込'),
+(4, 3, '仮申込');
+
+INSERT INTO students_courses_latest_status (students_courses_id, status_id, status)
+VALUES
+(1, 2, '受講中'),
+(2, 3, '本申込'),
+(3, 4, '仮申込');
+
+-- 明示的にIDを指定して挿入したため、自動採番を続きの値から始める
+ALTER TABLE students ALTER COLUMN id RESTART WITH 3;
+ALTER TABLE students_courses ALTER COLUMN id RESTART WITH 4;
+ALTER TABLE students_courses_status ALTER COLUMN id RESTART WITH 5;
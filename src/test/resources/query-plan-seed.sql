@@ -0,0 +1,30 @@
+-- 実行計画のテスト（QueryPlanTest）用のデータ。
+-- 件数が少ないとインデックスがあっても全件走査が選ばれるため、受講生5000人・コース10000件を登録する。
+-- H2のANALYZEはトランザクションをコミットし、登録したデータが他のテストに残るため実行しない（テスト終了時にロールバックする）
+INSERT INTO students (name, furigana, nickname, email, region, age, gender, remark)
+SELECT CONCAT('受講生', x), CONCAT('ジュコウセイ', x), CONCAT('student', x), CONCAT('student', x, '@example.com'),
+       CASE MOD(x, 4) WHEN 0 THEN '東京' WHEN 1 THEN '大阪' WHEN 2 THEN '福岡' ELSE '北海道' END,
+       20 + MOD(x, 40),
+       CASE MOD(x, 3) WHEN 0 THEN 'Male' WHEN 1 THEN 'Female' ELSE 'Other' END,
+       ''
+FROM (SELECT "X" AS x FROM SYSTEM_RANGE(1, 5000)) numbers;
+
+INSERT INTO students_courses (student_id, course_name, start_date, end_date)
+SELECT id, CASE MOD(id, 5) WHEN 0 THEN 'JAVA' WHEN 1 THEN 'Python' WHEN 2 THEN 'AWS' WHEN 3 THEN 'Excel' ELSE 'WordPress' END,
+       '2024-04-01 00:00:00', '2025-04-01 00:00:00'
+FROM students WHERE id > 2;
+
+INSERT INTO students_courses (student_id, course_name, start_date, end_date)
+SELECT id, 'デザイン', '2024-10-01 00:00:00', '2025-10-01 00:00:00'
+FROM students WHERE id > 2;
+
+INSERT INTO students_courses_status (students_courses_id, status)
+SELECT id, '仮申込' FROM students_courses WHERE id > 3;
+
+INSERT INTO students_courses_status (students_courses_id, status)
+SELECT id, '受講中' FROM students_courses WHERE id > 3;
+
+INSERT INTO students_courses_latest_status (students_courses_id, status_id, status)
+SELECT students_courses_id, MAX(id), '受講中' FROM students_courses_status
+WHERE students_courses_id > 3
+GROUP BY students_courses_id;
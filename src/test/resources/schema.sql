@@ -1,9 +1,16 @@
--- students_coursesテーブルとstudentsテーブルの削除（順番通り）
+-- テスト用のH2（MySQL互換モード）のスキーマ。src/main/resources/db/migration（V1〜V6）を全て適用した状態と同じ構成にする。
+-- ただし、H2は関数インデックスに対応していないため、LOWER(gender)・LOWER(course_name)のインデックスは作成しない。
+-- マイグレーションを追加した場合は、このファイルとsrc/jmh/resources/benchmark/schema.sqlも合わせて更新すること。
+DROP TABLE IF EXISTS students_courses_status_history;
+DROP TABLE IF EXISTS students_courses_status_archive;
+DROP TABLE IF EXISTS students_courses_archive;
+DROP TABLE IF EXISTS students_archive;
+DROP TABLE IF EXISTS students_courses_latest_status;
+DROP TABLE IF EXISTS students_courses_status;
 DROP TABLE IF EXISTS students_courses;
 DROP TABLE IF EXISTS students;
 
--- studentsテーブルの作成
-CREATE TABLE IF NOT EXISTS students
+CREATE TABLE students
 (
     id INT AUTO_INCREMENT PRIMARY KEY,
     name VARCHAR(255) NOT NULL,
@@ -14,16 +21,92 @@ CREATE TABLE IF NOT EXISTS students
     age INT,
     gender VARCHAR(50),
     remark TEXT,
-    isdeleted BOOLEAN NOT NULL DEFAULT FALSE
+    isdeleted BOOLEAN NOT NULL DEFAULT FALSE,
+    version INT NOT NULL DEFAULT 0,
+    deleted_at TIMESTAMP NULL
 );
 
--- students_coursesテーブルの作成（ON DELETE CASCADEを追加）
-CREATE TABLE IF NOT EXISTS students_courses
+CREATE TABLE students_courses
 (
     id INT PRIMARY KEY AUTO_INCREMENT,
     student_id INT NOT NULL,
     course_name VARCHAR(100),
     start_date TIMESTAMP,
     end_date TIMESTAMP,
-    FOREIGN KEY (student_id) REFERENCES students(id) ON DELETE CASCADE  -- 外部キー制約（削除時に関連データも削除）
+    version INT NOT NULL DEFAULT 0,
+    FOREIGN KEY (student_id) REFERENCES students(id) ON DELETE CASCADE
 );
+
+CREATE TABLE students_courses_status
+(
+    id INT PRIMARY KEY AUTO_INCREMENT,
+    students_courses_id INT NOT NULL,
+    status ENUM('仮申込', '本申込', '受講中', '受講終了') NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (students_courses_id) REFERENCES students_courses(id) ON DELETE CASCADE
+);
+
+CREATE TABLE students_courses_latest_status
+(
+    students_courses_id INT PRIMARY KEY,
+    status_id INT NOT NULL UNIQUE,
+    status ENUM('仮申込', '本申込', '受講中', '受講終了') NOT NULL,
+    FOREIGN KEY (students_courses_id) REFERENCES students_courses(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_students_courses_status_course_id ON students_courses_status (students_courses_id, id);
+CREATE INDEX idx_students_isdeleted_id ON students (isdeleted, id);
+CREATE INDEX idx_students_courses_student_id_id ON students_courses (student_id, id);
+CREATE INDEX idx_students_isdeleted_deleted_at ON students (isdeleted, deleted_at, id);
+
+CREATE TABLE students_archive
+(
+    id INT PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    furigana VARCHAR(255) NOT NULL,
+    nickname VARCHAR(255),
+    email VARCHAR(255) NOT NULL,
+    region VARCHAR(255),
+    age INT,
+    gender VARCHAR(50),
+    remark TEXT,
+    version INT NOT NULL DEFAULT 0,
+    deleted_at TIMESTAMP NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE students_courses_archive
+(
+    id INT PRIMARY KEY,
+    student_id INT NOT NULL,
+    course_name VARCHAR(100),
+    start_date TIMESTAMP,
+    end_date TIMESTAMP,
+    version INT NOT NULL DEFAULT 0,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_students_courses_archive_student_id ON students_courses_archive (student_id);
+
+CREATE TABLE students_courses_status_archive
+(
+    id INT PRIMARY KEY,
+    students_courses_id INT NOT NULL,
+    status ENUM('仮申込', '本申込', '受講中', '受講終了') NOT NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    created_at TIMESTAMP NULL
+);
+CREATE INDEX idx_students_courses_status_archive_course_id ON students_courses_status_archive (students_courses_id);
+
+CREATE TABLE students_courses_status_history
+(
+    id INT PRIMARY KEY AUTO_INCREMENT,
+    students_courses_id INT NOT NULL,
+    status ENUM('仮申込', '本申込', '受講中', '受講終了') NOT NULL,
+    first_status_id INT NOT NULL,
+    last_status_id INT NOT NULL,
+    transitions INT NOT NULL,
+    first_at TIMESTAMP NOT NULL,
+    last_at TIMESTAMP NOT NULL
+);
+CREATE INDEX idx_students_courses_status_history_course_last
+    ON students_courses_status_history (students_courses_id, last_status_id);